@@ -0,0 +1,353 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Traduit l'arbre d'une expression en une classe cachée implémentant DoubleUnaryOperator
+ * (une variable) ou ToDoubleFunction&lt;double[]&gt; (plusieurs variables).
+ * Le JIT peut alors compiler directement les appels à Math.sin, Math.pow, etc. sans parcours d'arbre.
+ */
+public class BytecodeCompiler {
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD = 0x18;
+    private static final int DLOAD_1 = 0x27;
+    private static final int DSTORE = 0x39;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int DALOAD = 0x31;
+    private static final int ASTORE_2 = 0x4d;
+    private static final int CHECKCAST = 0xc0;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DNEG = 0x77;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndexes = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final DataOutputStream codeOut = new DataOutputStream(code);
+
+    /** Les variables sont lues dans un tableau plutôt que passées en paramètre */
+    private final boolean frame;
+
+    private BytecodeCompiler(boolean frame) {
+        this.frame = frame;
+    }
+
+    /**
+     * Génère et charge une classe cachée qui évalue une expression de la seule variable x
+     * @param root racine de l'arbre de l'expression
+     * @return l'opérateur généré
+     * @throws IllegalStateException si la génération ou le chargement de la classe échoue
+     */
+    public static DoubleUnaryOperator compile(ExpressionNode root) {
+        return (DoubleUnaryOperator) instantiate(new BytecodeCompiler(false), root);
+    }
+
+    /**
+     * Génère et charge une classe cachée qui évalue une expression de plusieurs variables,
+     * lues dans le tableau passé en paramètre à l'indice de leur case
+     * @param root racine de l'arbre de l'expression
+     * @return la fonction générée
+     * @throws IllegalStateException si la génération ou le chargement de la classe échoue
+     */
+    @SuppressWarnings("unchecked")
+    public static ToDoubleFunction<double[]> compileFrame(ExpressionNode root) {
+        return (ToDoubleFunction<double[]>) instantiate(new BytecodeCompiler(true), root);
+    }
+
+    /**
+     * Génère, charge et instancie la classe cachée
+     */
+    private static Object instantiate(BytecodeCompiler compiler, ExpressionNode root) {
+        try {
+            byte[] bytes = compiler.generate(root);
+            MethodHandles.Lookup hidden = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Impossible de générer le bytecode de l'expression", e);
+        }
+    }
+
+    /**
+     * Produit le fichier .class complet
+     * @param root racine de l'arbre de l'expression
+     * @return le contenu du fichier .class
+     */
+    private byte[] generate(ExpressionNode root) throws IOException {
+        int thisClass = classConstant("ExpressionBytecode");
+        int superClass = classConstant("java/lang/Object");
+        int operatorInterface = classConstant(frame ? "java/util/function/ToDoubleFunction"
+                : "java/util/function/DoubleUnaryOperator");
+        int codeName = utf8Constant("Code");
+        int initName = utf8Constant("<init>");
+        int voidDescriptor = utf8Constant("()V");
+        int applyName = utf8Constant("applyAsDouble");
+        int applyDescriptor = utf8Constant(frame ? "(Ljava/lang/Object;)D" : "(D)D");
+        int superInit = methodConstant("java/lang/Object", "<init>", "()V");
+
+        codeOut.writeByte(ALOAD_0);
+        codeOut.writeByte(INVOKESPECIAL);
+        codeOut.writeShort(superInit);
+        codeOut.writeByte(RETURN);
+        byte[] constructorCode = code.toByteArray();
+        code.reset();
+
+        if (frame) {
+            // Le paramètre générique est converti une seule fois en double[] dans la variable locale 2
+            codeOut.writeByte(ALOAD_1);
+            codeOut.writeByte(CHECKCAST);
+            codeOut.writeShort(classConstant("[D"));
+            codeOut.writeByte(ASTORE_2);
+        }
+        emit(root);
+        codeOut.writeByte(DRETURN);
+        byte[] applyCode = code.toByteArray();
+        if (applyCode.length > MAX_CODE_LENGTH)
+            throw new IllegalStateException("Expression trop longue pour être compilée en bytecode");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(61);
+        out.writeShort(poolCount);
+        poolOut.flush();
+        pool.writeTo(out);
+        out.writeShort(0x0031); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(operatorInterface);
+        out.writeShort(0);
+        out.writeShort(2);
+        writeMethod(out, initName, voidDescriptor, codeName, 1, 1, constructorCode);
+        // Variables locales : this, x (deux mots) ou le cadre (Object puis double[]),
+        // puis une case double par sous-expression commune
+        writeMethod(out, applyName, applyDescriptor, codeName, stackSize(root), 3 + 2 * root.tempCount(), applyCode);
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Ecrit une méthode publique et son attribut Code
+     */
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName,
+            int maxStack, int maxLocals, byte[] body) throws IOException {
+        out.writeShort(0x0001);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + body.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    /**
+     * Emet les instructions qui laissent la valeur du noeud au sommet de la pile d'opérandes
+     * @param node noeud à traduire
+     */
+    private void emit(ExpressionNode node) throws IOException {
+        if (node instanceof ExpressionNode.Constant constant) {
+            double value = constant.getValue();
+            if (Double.doubleToRawLongBits(value) == 0L) {
+                codeOut.writeByte(DCONST_0);
+            } else if (value == 1.0) {
+                codeOut.writeByte(DCONST_1);
+            } else {
+                codeOut.writeByte(LDC2_W);
+                codeOut.writeShort(doubleConstant(value));
+            }
+        } else if (node instanceof ExpressionNode.Variable variable) {
+            if (frame) {
+                codeOut.writeByte(ALOAD_2);
+                pushInt(variable.getSlot());
+                codeOut.writeByte(DALOAD);
+            } else if (variable.getSlot() == 0) {
+                codeOut.writeByte(DLOAD_1);
+            } else {
+                throw new IllegalStateException("Variable supplémentaire dans une expression d'une seule variable");
+            }
+        } else if (node instanceof ExpressionNode.Let let) {
+            emit(let.getValue());
+            codeOut.writeByte(DSTORE);
+            codeOut.writeByte(local(let.getSlot()));
+            emit(let.getBody());
+        } else if (node instanceof ExpressionNode.Ref ref) {
+            codeOut.writeByte(DLOAD);
+            codeOut.writeByte(local(ref.getSlot()));
+        } else if (node instanceof ExpressionNode.Negate negate) {
+            emit(negate.getOperand());
+            codeOut.writeByte(DNEG);
+        } else if (node instanceof ExpressionNode.Binary binary) {
+            emit(binary.getLeft());
+            emit(binary.getRight());
+            switch (binary.getOperator()) {
+                case ADD -> codeOut.writeByte(DADD);
+                case SUBTRACT -> codeOut.writeByte(DSUB);
+                case MULTIPLY -> codeOut.writeByte(DMUL);
+                case DIVIDE -> codeOut.writeByte(DDIV);
+                case POWER -> invokeMath("pow", "(DD)D");
+            }
+        } else if (node instanceof ExpressionNode.Call call) {
+            emit(call.getArgument());
+            String name = switch (call.getFunction()) {
+                case SIN -> "sin";
+                case COS -> "cos";
+                case TAN -> "tan";
+                case LOG -> "log";
+                case EXP -> "exp";
+                case SQT -> "sqrt";
+            };
+            invokeMath(name, "(D)D");
+        } else {
+            throw new IllegalStateException("Noeud non pris en charge : " + node.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Empile une constante entière
+     */
+    private void pushInt(int value) throws IOException {
+        if (value <= 5) {
+            codeOut.writeByte(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            codeOut.writeByte(BIPUSH);
+            codeOut.writeByte(value);
+        } else {
+            codeOut.writeByte(SIPUSH);
+            codeOut.writeShort(value);
+        }
+    }
+
+    /**
+     * Indice de la variable locale qui contient une sous-expression commune
+     * @param slot case temporaire
+     * @return indice de la variable locale
+     */
+    private static int local(int slot) {
+        int index = 3 + 2 * slot;
+        if (index > 0xFF)
+            throw new IllegalStateException("Trop de sous-expressions communes");
+        return index;
+    }
+
+    /**
+     * Emet un appel statique à une méthode de java.lang.Math
+     */
+    private void invokeMath(String name, String descriptor) throws IOException {
+        codeOut.writeByte(INVOKESTATIC);
+        codeOut.writeShort(methodConstant("java/lang/Math", name, descriptor));
+    }
+
+    /**
+     * Calcule la profondeur maximale de la pile d'opérandes, en mots (un double occupe deux mots)
+     * @param node noeud à traduire
+     * @return profondeur maximale
+     */
+    private static int stackSize(ExpressionNode node) {
+        if (node instanceof ExpressionNode.Negate negate)
+            return stackSize(negate.getOperand());
+        if (node instanceof ExpressionNode.Call call)
+            return stackSize(call.getArgument());
+        if (node instanceof ExpressionNode.Let let)
+            return Math.max(stackSize(let.getValue()), stackSize(let.getBody()));
+        if (node instanceof ExpressionNode.Binary binary)
+            return Math.max(stackSize(binary.getLeft()), 2 + stackSize(binary.getRight()));
+        return 2;
+    }
+
+    private int utf8Constant(String value) throws IOException {
+        Integer index = poolIndexes.get("U" + value);
+        if (index != null)
+            return index;
+        poolOut.writeByte(CONSTANT_UTF8);
+        poolOut.writeUTF(value);
+        return register("U" + value, 1);
+    }
+
+    private int classConstant(String internalName) throws IOException {
+        Integer index = poolIndexes.get("C" + internalName);
+        if (index != null)
+            return index;
+        int name = utf8Constant(internalName);
+        poolOut.writeByte(CONSTANT_CLASS);
+        poolOut.writeShort(name);
+        return register("C" + internalName, 1);
+    }
+
+    private int methodConstant(String owner, String name, String descriptor) throws IOException {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = poolIndexes.get(key);
+        if (index != null)
+            return index;
+        int ownerIndex = classConstant(owner);
+        int nameIndex = utf8Constant(name);
+        int descriptorIndex = utf8Constant(descriptor);
+        Integer nameAndType = poolIndexes.get("N" + name + descriptor);
+        if (nameAndType == null) {
+            poolOut.writeByte(CONSTANT_NAME_AND_TYPE);
+            poolOut.writeShort(nameIndex);
+            poolOut.writeShort(descriptorIndex);
+            nameAndType = register("N" + name + descriptor, 1);
+        }
+        poolOut.writeByte(CONSTANT_METHODREF);
+        poolOut.writeShort(ownerIndex);
+        poolOut.writeShort(nameAndType);
+        return register(key, 1);
+    }
+
+    private int doubleConstant(double value) throws IOException {
+        String key = "D" + Double.doubleToRawLongBits(value);
+        Integer index = poolIndexes.get(key);
+        if (index != null)
+            return index;
+        poolOut.writeByte(CONSTANT_DOUBLE);
+        poolOut.writeDouble(value);
+        // Un double occupe deux entrées de la table des constantes
+        return register(key, 2);
+    }
+
+    private int register(String key, int slots) {
+        int index = poolCount;
+        if (poolCount + slots > 0xFFFF)
+            throw new IllegalStateException("Table des constantes pleine");
+        poolCount += slots;
+        poolIndexes.put(key, index);
+        return index;
+    }
+}
@@ -18,6 +18,7 @@ public class CalculatorController implements CalculatorControllerInterface {
         this.model = model;
         this.view = view;
         initializeEventHandlers();
+        initializeStackView();
         updateView();
     }
 
@@ -40,11 +41,53 @@ public class CalculatorController implements CalculatorControllerInterface {
     }
     
     /**
-     * Met à jour la vue de la calculatrice
+     * Affiche la pile initiale une seule fois, puis transmet à la vue chaque modification élément par élément
+     */
+    private void initializeStackView() {
+        DoubleStackView memory = model.getMemory();
+        List<Double> stackData = new ArrayList<>(memory.size());
+        for (int i = 0; i < memory.size(); i++)
+            stackData.add(memory.get(i));
+        changeStackData(stackData);
+
+        model.addStackListener(new StackListener() {
+            @Override
+            public void pushed(double value) {
+                view.stackPushed(value);
+            }
+
+            @Override
+            public void popped() {
+                view.stackPopped();
+            }
+
+            @Override
+            public void replaced(int index, double value) {
+                view.stackReplaced(index, value);
+            }
+
+            @Override
+            public void pushedAll(double[] values) {
+                view.stackPushedAll(values);
+            }
+
+            @Override
+            public void poppedAll(int count) {
+                view.stackPoppedAll(count);
+            }
+
+            @Override
+            public void replacedTop(double[] values) {
+                view.stackReplacedTop(values);
+            }
+        });
+    }
+
+    /**
+     * Met à jour l'accumulateur affiché ; la pile est tenue à jour par les notifications du modèle
      */
     private void updateView() {
         changeAccu(String.valueOf(model.getAccu()));
-        changeStackData(new ArrayList<>(model.getMemory()));
     }
     
     /**
@@ -147,5 +190,15 @@ public class CalculatorController implements CalculatorControllerInterface {
             model.clear();
             updateView();
         });
+
+        ((CalculatorGUI)view).setUndoHandler(() -> {
+            if (model.undo())
+                updateView();
+        });
+
+        ((CalculatorGUI)view).setRedoHandler(() -> {
+            if (model.redo())
+                updateView();
+        });
     }
 }
\ No newline at end of file
@@ -1,3 +1,6 @@
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -15,6 +18,12 @@ import javafx.event.EventHandler;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.image.Image;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.ImagePattern;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
@@ -24,6 +33,16 @@ import javafx.stage.Stage;
 import java.util.List;
 import java.beans.Expression;
 import java.util.ArrayList;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 
@@ -65,6 +84,85 @@ public class CalculatorGUI implements CalculatorGUIInterface {
 
     private ThemeManager themeManager = new ThemeManager();
 
+    /** Couleurs des courbes, dans l'ordre des fonctions saisies */
+    private static final Color[] CURVE_COLORS = {
+            Color.RED, Color.DODGERBLUE, Color.LIMEGREEN, Color.ORANGE, Color.MAGENTA, Color.CYAN
+    };
+
+    /** Threads de calcul des courbes, une fonction par thread, pour ne pas bloquer l'interface */
+    private final ExecutorService plotExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), task -> {
+                Thread thread = new Thread(task, "graph-plot");
+                thread.setDaemon(true);
+                return thread;
+            });
+    /** Echantillonneur propre à chaque thread de calcul */
+    private final ThreadLocal<CurveSampler> plotSamplers = ThreadLocal.withInitial(CurveSampler::new);
+    /** Valeurs déjà calculées de chaque fonction tracée, pour ne rééchantillonner que les courbes ajoutées */
+    private Map<CompiledExpression, SampleCache> plotCaches = new HashMap<>();
+    /** Numéro du dernier tracé demandé : le résultat d'un tracé plus ancien n'est jamais affiché */
+    private final AtomicLong plotGeneration = new AtomicLong();
+    /** Courbes en cours de calcul, annulées dès qu'un nouveau tracé est demandé */
+    private final List<Future<?>> pendingPlots = new ArrayList<>();
+    /** Rendu des fonctions de deux variables, en tuiles parallèles */
+    private final FieldRenderer fieldRenderer = new FieldRenderer();
+    /** Image de chaque fonction de deux variables, par position dans la liste des fonctions */
+    private final List<FieldImage> fieldImages = new ArrayList<>();
+    /** Boucle d'affichage du graphe, qui regroupe les demandes de tracé en une par image */
+    private AnimationTimer graphTimer;
+    /** Coordonnées en pixels de la portion de courbe en cours, réutilisées d'un tracé à l'autre */
+    private double[] polylineXs = new double[0];
+    private double[] polylineYs = new double[0];
+
+    /**
+     * Image d'une fonction de deux variables, réutilisée d'un tracé à l'autre tant que la taille de la vue
+     * ne change pas. Chaque rendu travaille dans son propre tableau, pris parmi les tableaux libres,
+     * puis le thread JavaFX le recopie dans le PixelBuffer et le rend : un rendu annulé qui se termine
+     * ne peut pas écrire dans l'image affichée ni dans le tableau d'un rendu plus récent.
+     */
+    private static final class FieldImage {
+        final int columns;
+        final int rows;
+        /** Pixels du PixelBuffer, modifiés seulement dans updateBuffer */
+        final int[] pixels;
+        final PixelBuffer<IntBuffer> buffer;
+        final WritableImage image;
+        private final Queue<int[]> spare = new ConcurrentLinkedQueue<>();
+
+        FieldImage(int columns, int rows) {
+            this.columns = columns;
+            this.rows = rows;
+            this.pixels = new int[columns * rows];
+            this.buffer = new PixelBuffer<>(columns, rows, IntBuffer.wrap(pixels), PixelFormat.getIntArgbPreInstance());
+            this.image = new WritableImage(buffer);
+        }
+
+        /**
+         * Tableau de rendu libre, alloué seulement si tous sont pris
+         */
+        int[] take() {
+            int[] free = spare.poll();
+            return free != null ? free : new int[columns * rows];
+        }
+
+        /**
+         * Rend un tableau de rendu une fois son contenu recopié ou abandonné
+         */
+        void release(int[] free) {
+            spare.offer(free);
+        }
+
+        /**
+         * Recopie un rendu dans l'image, sur le thread JavaFX
+         */
+        void show(int[] rendered) {
+            buffer.updateBuffer(b -> {
+                System.arraycopy(rendered, 0, pixels, 0, pixels.length);
+                return null;
+            });
+        }
+    }
+
     /**
      * Classe interne pour concentrer les dimensions des boutons
      */
@@ -592,53 +690,65 @@ public class CalculatorGUI implements CalculatorGUIInterface {
      * @param displayRectStartingY Coordonée en y du point haut gauche de displayRect
      * @param epsilon Variable pour éviter l'overlapping entre le display rect et les axes du repère Cartésien
      * @param zoomLevel Zoom du graphe
+     * @param originx Coordonnée en x de l'origine du repère, éventuellement hors de displayRect
+     * @param originy Coordonnée en y de l'origine du repère, éventuellement hors de displayRect
      */
     private void drawAxes(GraphicsContext gc, double displayRectWidth, double displayRectHeight,
-            double displayRectStartingX, double displayRectStartingY, double epsilon, double zoomLevel) {
+            double displayRectStartingX, double displayRectStartingY, double epsilon, double zoomLevel,
+            double originx, double originy) {
         gc.setStroke(Color.BLACK);
         gc.setLineWidth(1.5);
-        double originx = displayRectWidth / 2 + displayRectStartingX;
-        double originy = displayRectStartingY + displayRectHeight / 2;
-
-        // Axes
-        gc.strokeLine(displayRectStartingX + epsilon, originy, (displayRectWidth + displayRectStartingX) - epsilon,
-                originy); // Axe X
-        gc.strokeLine(originx, displayRectStartingY + epsilon, originx,
-                (displayRectHeight + displayRectStartingY) - epsilon); // Axe Y
+        double left = displayRectStartingX + epsilon;
+        double right = displayRectStartingX + displayRectWidth - epsilon;
+        double top = displayRectStartingY + epsilon;
+        double bottom = displayRectStartingY + displayRectHeight - epsilon;
+        boolean xAxisVisible = originy > top && originy < bottom;
+        boolean yAxisVisible = originx > left && originx < right;
+
+        // Axes, seulement s'ils passent dans la zone d'affichage
+        if (xAxisVisible)
+            gc.strokeLine(left, originy, right, originy); // Axe X
+        if (yAxisVisible)
+            gc.strokeLine(originx, top, originx, bottom); // Axe Y
         double step = 20 * zoomLevel;
 
+        // Graduations visibles, numérotées depuis l'origine
+        int firstColumn = (int) Math.ceil((left - originx) / step);
+        int lastColumn = (int) Math.floor((right - originx) / step);
+        int firstRow = (int) Math.ceil((originy - bottom) / step);
+        int lastRow = (int) Math.floor((originy - top) / step);
+
         gc.setStroke(Color.GRAY);
-        for (double x = originx; x < originx + displayRectWidth / 2; x += step)
-            gc.strokeLine(x, originy - 5, x, originy + 5);
-        for (double x = originx; x > originx - displayRectWidth / 2; x -= step)
-            gc.strokeLine(x, originy - 5, x, originy + 5);
-        for (double y = originy; y < originy + displayRectHeight / 2; y += step)
-            gc.strokeLine(originx - 5, y, originx + 5, y);
-        for (double y = originy; y > originy - displayRectHeight / 2; y -= step)
-            gc.strokeLine(originx - 5, y, originx + 5, y);
+        if (xAxisVisible) {
+            for (int i = firstColumn; i <= lastColumn; i++)
+                gc.strokeLine(originx + i * step, originy - 5, originx + i * step, originy + 5);
+        }
+        if (yAxisVisible) {
+            for (int i = firstRow; i <= lastRow; i++)
+                gc.strokeLine(originx - 5, originy - i * step, originx + 5, originy - i * step);
+        }
 
         // Labels
-        for (int i = -(int) Math.floor(displayRectWidth / (step * 2) + 0.5)
-                + 1; i <= (int) Math.floor(displayRectWidth / (step * 2) + 0.5) - 1; i++) {
-            if (i == 0)
-                continue;
-            gc.fillText(String.valueOf(i), originx + i * step - 5, originy + 15);
+        if (xAxisVisible) {
+            for (int i = firstColumn; i <= lastColumn; i++) {
+                if (i == 0)
+                    continue;
+                gc.fillText(String.valueOf(i), originx + i * step - 5, originy + 15);
+            }
         }
-        for (int i = -(int) Math.floor(displayRectHeight / (step * 2) + 0.5)
-                + 1; i <= (int) Math.floor(displayRectHeight / (step * 2) + 0.5) - 1; i++) {
-            if (i == 0)
-                continue;
-            gc.fillText(String.valueOf(i), originx + 5, originy - i * step + 5);
+        if (yAxisVisible) {
+            for (int i = firstRow; i <= lastRow; i++) {
+                if (i == 0)
+                    continue;
+                gc.fillText(String.valueOf(i), originx + 5, originy - i * step + 5);
+            }
         }
 
         gc.setStroke(Color.GRAY.deriveColor(0, 1, 1, 0.4));
-        for (double i = displayRectStartingX + step / 2; i < displayRectWidth + displayRectStartingX; i += step) {
-            gc.strokeLine(i, displayRectStartingY + epsilon, i, displayRectHeight + displayRectStartingY - epsilon);
-        }
-
-        for (double j = displayRectStartingY + step; j < displayRectHeight + displayRectStartingY; j += step) {
-            gc.strokeLine(displayRectStartingX + epsilon, j, displayRectWidth + displayRectStartingX - epsilon, j);
-        }
+        for (int i = firstColumn; i <= lastColumn; i++)
+            gc.strokeLine(originx + i * step, top, originx + i * step, bottom);
+        for (int i = firstRow; i <= lastRow; i++)
+            gc.strokeLine(left, originy - i * step, right, originy - i * step);
     }
     
     /**
@@ -670,11 +780,23 @@ public class CalculatorGUI implements CalculatorGUIInterface {
         final double[] zoomLevel = { 1.0 };
         final double minZoom = 0.1;
         final double maxZoom = 10.0;
+        // Point du repère affiché au centre de la zone d'affichage, déplacé en faisant glisser la souris
+        final double[] center = { 0.0, 0.0 };
+        // Nouveau tracé demandé, effectué à la prochaine image
+        final boolean[] renderRequested = { false };
         ExpressionEvaluator expressionEvaluator = new ExpressionEvaluator();
+        // Les fonctions de deux variables sont évaluées en chaque pixel : on les compile toujours en bytecode
+        ExpressionEvaluator fieldEvaluator = new ExpressionEvaluator(ExpressionEvaluator.Backend.BYTECODE);
 
         addBackgroundToLayout(graphLayout);
 
-        // Canvas pour tracer
+        // Trois calques : les cartes de chaleur, le repère, redessiné seulement quand la vue change,
+        // et les courbes par-dessus
+        Canvas fieldCanvas = new Canvas(width, height);
+        GraphicsContext fieldGc = fieldCanvas.getGraphicsContext2D();
+        Canvas axesCanvas = new Canvas(width, height);
+        GraphicsContext axesGc = axesCanvas.getGraphicsContext2D();
+        final double[] axesView = { zoomLevel[0], center[0], center[1] };
         Canvas canvas = new Canvas(width, height);
         GraphicsContext gc = canvas.getGraphicsContext2D();
 
@@ -700,9 +822,10 @@ public class CalculatorGUI implements CalculatorGUIInterface {
         graphLayout.getChildren().add(functionField);
 
         // --- Tracer le repère
-        drawAxes(gc, displayRect.getWidth(), displayRect.getHeight(), displayRect.getX(), displayRect.getY(), epsilon,
-                zoomLevel[0]);
-        graphLayout.getChildren().add(canvas);
+        drawAxes(axesGc, displayRect.getWidth(), displayRect.getHeight(), displayRect.getX(), displayRect.getY(),
+                epsilon, zoomLevel[0], displayRect.getX() + displayRect.getWidth() / 2,
+                displayRect.getY() + displayRect.getHeight() / 2);
+        graphLayout.getChildren().addAll(fieldCanvas, axesCanvas, canvas);
 
         // --- Boutons
         ButtonDimensions dims = new ButtonDimensions(width, height, 6.0, 18.0);
@@ -751,48 +874,108 @@ public class CalculatorGUI implements CalculatorGUIInterface {
 
         // --- Action de tracé
         plotButton.setOnAction(e -> {
-            gc.clearRect(0, 0, width, height);
-            gc.setLineWidth(1.5);
-
-            drawAxes(gc, displayRect.getWidth(), displayRect.getHeight(), displayRect.getX(), displayRect.getY(),
-                    epsilon, zoomLevel[0]);
-
-            String expr = functionField.getText();
-            if (expr == null || expr.isEmpty())
-                return;
+            long generation = plotGeneration.incrementAndGet();
+            for (Future<?> pending : pendingPlots)
+                pending.cancel(true);
+            pendingPlots.clear();
 
-            gc.setStroke(Color.RED);
-            gc.setLineWidth(2);
             double scaleX = 40 * zoomLevel[0];
             double scaleY = 40 * zoomLevel[0];
-            double originX = width * 0.75 / 2 + width / 8;
-            double originY = height / 16 + (height / 2.5) / 2;
+            double originX = displayRect.getX() + displayRect.getWidth() / 2 - center[0] * scaleX;
+            double originY = displayRect.getY() + displayRect.getHeight() / 2 + center[1] * scaleY;
 
-            double xmin = -((width * 0.75) / 2) / scaleX;
-            double xmax = ((width * 0.75) / 2) / scaleX;
+            gc.clearRect(0, 0, width, height);
+            fieldGc.clearRect(0, 0, width, height);
+            if (axesView[0] != zoomLevel[0] || axesView[1] != center[0] || axesView[2] != center[1]) {
+                axesGc.clearRect(0, 0, width, height);
+                drawAxes(axesGc, displayRect.getWidth(), displayRect.getHeight(), displayRect.getX(),
+                        displayRect.getY(), epsilon, zoomLevel[0], originX, originY);
+                axesView[0] = zoomLevel[0];
+                axesView[1] = center[0];
+                axesView[2] = center[1];
+            }
 
-            double prevX = xmin;
-            double prevY = expressionEvaluator.evaluate(functionField.getText(), prevX);
+            String expr = functionField.getText();
+            if (expr == null || expr.isEmpty())
+                return;
 
-            for (double x = xmin + 0.01; x <= xmax; x += 0.01) {
-                double y = expressionEvaluator.evaluate(functionField.getText(), x);
-                if ((Double.isNaN(y) || Double.isInfinite(y))) {
-                    prevX = x;
-                    prevY = y;
+            // Plusieurs fonctions séparées par des ';', chacune analysée une seule fois par tracé :
+            // une courbe y = f(x), une courbe implicite g(x, y) = h(x, y) ou une carte de chaleur de f(x, y).
+            // Une fonction invalide est ignorée sans empêcher le tracé des autres.
+            List<CompiledExpression> functions = new ArrayList<>();
+            List<FieldRenderer.Mode> modes = new ArrayList<>();
+            for (String part : expr.split(";")) {
+                if (part.isBlank())
                     continue;
+                CompiledExpression function = null;
+                FieldRenderer.Mode mode = null;
+                try {
+                    int equals = part.indexOf('=');
+                    if (equals >= 0) {
+                        function = fieldEvaluator.compile("(" + part.substring(0, equals) + ")-("
+                                + part.substring(equals + 1) + ")", "x", "y");
+                        mode = FieldRenderer.Mode.IMPLICIT;
+                    } else {
+                        try {
+                            function = expressionEvaluator.compile(part);
+                        } catch (ExpressionParseException ex) {
+                            function = fieldEvaluator.compile(part, "x", "y");
+                            mode = FieldRenderer.Mode.HEATMAP;
+                        }
+                    }
+                } catch (IllegalArgumentException ex) {
+                    function = null;
                 }
+                functions.add(function);
+                modes.add(mode);
+            }
 
-                double px1 = originX + prevX * scaleX;
-                double py1 = originY - prevY * scaleY;
-                double px2 = originX + x * scaleX;
-                double py2 = originY - y * scaleY;
-                // On vérifie que la courbe est toujours bien in bound
-                if ((py2 > displayRect.getY() + epsilon
-                        && py2 < (displayRect.getY() + displayRect.getHeight()) - epsilon))
-                    gc.strokeLine(px1, py1, px2, py2);
-
-                prevX = x;
-                prevY = y;
+            // On ne garde que les valeurs des fonctions encore tracées
+            Map<CompiledExpression, SampleCache> caches = new HashMap<>();
+            for (CompiledExpression function : functions) {
+                if (function != null && function.isSingleVariable() && !caches.containsKey(function)) {
+                    SampleCache cache = plotCaches.get(function);
+                    caches.put(function, cache != null ? cache : new SampleCache(function));
+                }
+            }
+            plotCaches = caches;
+
+            double xmin = center[0] - (displayRect.getWidth() / 2) / scaleX;
+            double xmax = center[0] + (displayRect.getWidth() / 2) / scaleX;
+            double ymax = (originY - displayRect.getY()) / scaleY;
+            double ymin = ymax - displayRect.getHeight() / scaleY;
+            int columns = (int) Math.ceil(displayRect.getWidth());
+            int rows = (int) Math.ceil(displayRect.getHeight());
+
+            // Une tâche par fonction, en parallèle, sur la même grille ; chaque courbe est tracée sur le thread
+            // JavaFX dès qu'elle est prête, si aucun tracé plus récent n'a été demandé
+            for (int i = 0; i < functions.size(); i++) {
+                if (functions.get(i) == null)
+                    continue;
+                if (modes.get(i) != null) {
+                    pendingPlots.add(plotField(i, functions.get(i), modes.get(i), CURVE_COLORS[i % CURVE_COLORS.length],
+                            modes.get(i) == FieldRenderer.Mode.HEATMAP ? fieldGc : gc, displayRect, epsilon,
+                            originX, originY, scaleX, scaleY, generation));
+                    continue;
+                }
+                SampleCache cache = caches.get(functions.get(i));
+                Color color = CURVE_COLORS[i % CURVE_COLORS.length];
+                pendingPlots.add(plotExecutor.submit(() -> {
+                    CurveSampler sampler = plotSamplers.get();
+                    int samples;
+                    // Un tracé annulé peut encore tourner : le cache n'est modifié que par une tâche à la fois
+                    synchronized (cache) {
+                        // Environ un point par colonne de pixels, plus là où la courbe se courbe ou se coupe
+                        samples = sampler.sample(cache, xmin, xmax, ymin, ymax, columns, rows);
+                    }
+                    double[] xs = Arrays.copyOf(sampler.getXs(), samples);
+                    double[] ys = Arrays.copyOf(sampler.getYs(), samples);
+                    Platform.runLater(() -> {
+                        if (generation == plotGeneration.get())
+                            drawCurve(gc, displayRect, epsilon, color, xs, ys, samples, originX, originY, scaleX,
+                                    scaleY);
+                    });
+                }));
             }
         });
 
@@ -801,7 +984,10 @@ public class CalculatorGUI implements CalculatorGUIInterface {
                     Math.min(width, height) / 20.0, 
                     Math.max(2.0, width / 150.0), 
                     width / 36.0);
-        backButton.setOnAction(e -> stage.setScene(this.scene));
+        backButton.setOnAction(e -> {
+            graphTimer.stop();
+            stage.setScene(this.scene);
+        });
         AnchorPane.setTopAnchor(backButton, 20.0);
         AnchorPane.setLeftAnchor(backButton, 20.0);
         graphLayout.getChildren().add(backButton);
@@ -814,7 +1000,7 @@ public class CalculatorGUI implements CalculatorGUIInterface {
         zoomInButton.setOnAction(e -> {
             if (zoomLevel[0] < maxZoom) {
                 zoomLevel[0] *= 1.5;
-                plotButton.fire();
+                renderRequested[0] = true;
             }
         });
 
@@ -826,9 +1012,190 @@ public class CalculatorGUI implements CalculatorGUIInterface {
         zoomOutButton.setOnAction(e -> {
             if (zoomLevel[0] > minZoom) {
                 zoomLevel[0] /= 1.5;
-                plotButton.fire();
+                renderRequested[0] = true;
             }
         });
+
+        // --- Zoom à la molette autour du curseur et déplacement à la souris, dans la zone d'affichage
+        canvas.setOnScroll(e -> {
+            if (!displayRect.contains(e.getX(), e.getY()) || e.getDeltaY() == 0)
+                return;
+            double scale = 40 * zoomLevel[0];
+            double newZoom = Math.max(minZoom, Math.min(maxZoom, zoomLevel[0] * Math.pow(1.0015, e.getDeltaY())));
+            double newScale = 40 * newZoom;
+            // Le point sous le curseur reste en place
+            double dx = e.getX() - (displayRect.getX() + displayRect.getWidth() / 2);
+            double dy = e.getY() - (displayRect.getY() + displayRect.getHeight() / 2);
+            center[0] += dx / scale - dx / newScale;
+            center[1] -= dy / scale - dy / newScale;
+            zoomLevel[0] = newZoom;
+            renderRequested[0] = true;
+        });
+        final double[] dragStart = { Double.NaN, Double.NaN };
+        canvas.setOnMousePressed(e -> {
+            boolean inside = displayRect.contains(e.getX(), e.getY());
+            dragStart[0] = inside ? e.getX() : Double.NaN;
+            dragStart[1] = inside ? e.getY() : Double.NaN;
+        });
+        canvas.setOnMouseDragged(e -> {
+            if (Double.isNaN(dragStart[0]))
+                return;
+            double scale = 40 * zoomLevel[0];
+            center[0] -= (e.getX() - dragStart[0]) / scale;
+            center[1] += (e.getY() - dragStart[1]) / scale;
+            dragStart[0] = e.getX();
+            dragStart[1] = e.getY();
+            renderRequested[0] = true;
+        });
+
+        // Les événements ne font que modifier la vue : un seul tracé par image, quel que soit leur nombre
+        if (graphTimer != null)
+            graphTimer.stop();
+        graphTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (renderRequested[0]) {
+                    renderRequested[0] = false;
+                    plotButton.fire();
+                }
+            }
+        };
+        graphTimer.start();
+    }
+
+    /**
+     * Lance en arrière-plan le rendu d'une fonction de deux variables sur la zone d'affichage,
+     * puis l'affiche sur le thread JavaFX si aucun tracé plus récent n'a été demandé
+     * @param slot position de la fonction dans la liste, dont l'image est réutilisée d'un tracé à l'autre
+     * @param function Expression compilée des variables x et y
+     * @param mode Courbe implicite ou carte de chaleur
+     * @param color Couleur de la courbe implicite
+     * @param gc Contexte graphique du calque où afficher l'image
+     * @param displayRect Zone d'affichage
+     * @param epsilon Marge entre le bord de la zone et l'image
+     * @param originX abscisse de l'origine en pixels
+     * @param originY ordonnée de l'origine en pixels
+     * @param scaleX nombre de pixels par unité en x
+     * @param scaleY nombre de pixels par unité en y
+     * @param generation numéro du tracé
+     * @return la tâche de rendu
+     */
+    private Future<?> plotField(int slot, CompiledExpression function, FieldRenderer.Mode mode, Color color,
+            GraphicsContext gc, Rectangle displayRect, double epsilon, double originX, double originY, double scaleX,
+            double scaleY, long generation) {
+        double left = displayRect.getX() + epsilon;
+        double top = displayRect.getY() + epsilon;
+        int columns = (int) (displayRect.getWidth() - 2 * epsilon);
+        int rows = (int) (displayRect.getHeight() - 2 * epsilon);
+        int argb = (int) Math.round(color.getOpacity() * 255) << 24 | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8 | (int) Math.round(color.getBlue() * 255);
+        FieldImage target = fieldImage(slot, columns, rows);
+        return plotExecutor.submit(() -> {
+            int[] pixels = target.take();
+            try {
+                fieldRenderer.render(function, mode, (left - originX) / scaleX, (left + columns - originX) / scaleX,
+                        (originY - top - rows) / scaleY, (originY - top) / scaleY, columns, rows, argb, pixels,
+                        () -> generation != plotGeneration.get());
+            } catch (RuntimeException e) {
+                target.release(pixels);
+                throw e;
+            }
+            Platform.runLater(() -> {
+                try {
+                    if (generation != plotGeneration.get())
+                        return;
+                    target.show(pixels);
+                    gc.drawImage(target.image, left, top);
+                } finally {
+                    target.release(pixels);
+                }
+            });
+        });
+    }
+
+    /**
+     * Image de la fonction à une position donnée, recréée si la taille de la vue a changé
+     */
+    private FieldImage fieldImage(int slot, int columns, int rows) {
+        while (fieldImages.size() <= slot)
+            fieldImages.add(null);
+        FieldImage image = fieldImages.get(slot);
+        if (image == null || image.columns != columns || image.rows != rows) {
+            image = new FieldImage(columns, rows);
+            fieldImages.set(slot, image);
+        }
+        return image;
+    }
+
+    /**
+     * Trace une courbe échantillonnée dans la zone d'affichage, en une polyligne par portion continue.
+     * Un point NaN, infini ou hors de la zone coupe la courbe.
+     * @param gc Contexte graphique du canvas
+     * @param displayRect Zone d'affichage
+     * @param epsilon Marge entre le bord de la zone et la courbe
+     * @param color Couleur de la courbe
+     * @param xs abscisses des points
+     * @param ys ordonnées des points
+     * @param samples nombre de points
+     * @param originX abscisse de l'origine en pixels
+     * @param originY ordonnée de l'origine en pixels
+     * @param scaleX nombre de pixels par unité en x
+     * @param scaleY nombre de pixels par unité en y
+     */
+    private void drawCurve(GraphicsContext gc, Rectangle displayRect, double epsilon, Color color, double[] xs,
+            double[] ys, int samples, double originX, double originY, double scaleX, double scaleY) {
+        gc.setStroke(color);
+        gc.setLineWidth(2);
+        if (polylineXs.length < samples) {
+            polylineXs = new double[samples];
+            polylineYs = new double[samples];
+        }
+        double top = displayRect.getY() + epsilon;
+        double bottom = displayRect.getY() + displayRect.getHeight() - epsilon;
+
+        int count = 0;
+        // Dernier point fini, qui commence la portion suivante même s'il est hors de la zone
+        boolean hasPrevious = false;
+        double prevX = 0;
+        double prevY = 0;
+        for (int i = 0; i < samples; i++) {
+            if (!Double.isFinite(ys[i])) {
+                count = strokePolyline(gc, count);
+                hasPrevious = false;
+                continue;
+            }
+            double px = originX + xs[i] * scaleX;
+            double py = originY - ys[i] * scaleY;
+            // On vérifie que la courbe est toujours bien in bound
+            if (py > top && py < bottom) {
+                if (count == 0 && hasPrevious) {
+                    polylineXs[0] = prevX;
+                    polylineYs[0] = prevY;
+                    count = 1;
+                }
+                polylineXs[count] = px;
+                polylineYs[count] = py;
+                count++;
+            } else {
+                count = strokePolyline(gc, count);
+            }
+            hasPrevious = true;
+            prevX = px;
+            prevY = py;
+        }
+        strokePolyline(gc, count);
+    }
+
+    /**
+     * Trace la portion de courbe accumulée dans polylineXs et polylineYs
+     * @param gc Contexte graphique du canvas
+     * @param count nombre de points de la portion
+     * @return 0, le nombre de points de la portion suivante
+     */
+    private int strokePolyline(GraphicsContext gc, int count) {
+        if (count >= 2)
+            gc.strokePolyline(polylineXs, polylineYs, count);
+        return 0;
     }
 
     /**
@@ -1068,6 +1435,77 @@ public class CalculatorGUI implements CalculatorGUIInterface {
         }
     }
 
+    /**
+     * Ajoute l'élément empilé en tête de la liste, qui affiche le sommet de la pile en premier
+     * @param value élément empilé
+     */
+    @Override
+    public void stackPushed(double value) {
+        stackDisplay.getItems().add(0, value);
+    }
+
+    /**
+     * Retire l'élément en tête de la liste
+     */
+    @Override
+    public void stackPopped() {
+        stackDisplay.getItems().remove(0);
+    }
+
+    /**
+     * Remplace un seul élément de la liste
+     * @param index position dans la pile, 0 étant le bas
+     * @param value nouvelle valeur
+     */
+    @Override
+    public void stackReplaced(int index, double value) {
+        ObservableList<Double> items = stackDisplay.getItems();
+        items.set(items.size() - 1 - index, value);
+    }
+
+    /**
+     * Ajoute les éléments empilés en tête de la liste, en une seule modification
+     * @param values éléments empilés, le dernier étant au sommet
+     */
+    @Override
+    public void stackPushedAll(double[] values) {
+        stackDisplay.getItems().addAll(0, reversed(values));
+    }
+
+    /**
+     * Retire les premiers éléments de la liste, en une seule modification
+     * @param count nombre d'éléments dépilés
+     */
+    @Override
+    public void stackPoppedAll(int count) {
+        stackDisplay.getItems().remove(0, count);
+    }
+
+    /**
+     * Remplace les premiers éléments de la liste
+     * @param values nouvelles valeurs, la dernière étant au sommet
+     */
+    @Override
+    public void stackReplacedTop(double[] values) {
+        ObservableList<Double> items = stackDisplay.getItems();
+        if (values.length == 1) {
+            items.set(0, values[0]);
+        } else {
+            items.remove(0, values.length);
+            items.addAll(0, reversed(values));
+        }
+    }
+
+    /**
+     * Eléments de la pile dans l'ordre de la liste affichée, du sommet vers le bas
+     */
+    private static List<Double> reversed(double[] values) {
+        List<Double> list = new ArrayList<>(values.length);
+        for (int i = values.length - 1; i >= 0; i--)
+            list.add(values[i]);
+        return list;
+    }
+
     /**
      * Lie le bouton add à l'action add
      * @param handler Objet représentant l'action de l'utilisateur
@@ -1148,6 +1586,22 @@ public class CalculatorGUI implements CalculatorGUIInterface {
         clearButton.addEventFilter(ActionEvent.ACTION, handler);
     }
 
+    /**
+     * Lie le raccourci Ctrl+Z (Cmd+Z sous macOS) à l'action annuler
+     * @param handler Action à exécuter
+     */
+    public void setUndoHandler(Runnable handler) {
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN), handler);
+    }
+
+    /**
+     * Lie le raccourci Ctrl+Y (Cmd+Y sous macOS) à l'action rétablir
+     * @param handler Action à exécuter
+     */
+    public void setRedoHandler(Runnable handler) {
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN), handler);
+    }
+
     /**
      * Lie les boutons chiffres à l'action ajouter un chiffre
      * @param digit   Chiffre d'entrée
@@ -15,4 +15,28 @@ public interface CalculatorGUIInterface {
      * Modifie la pile
      */
     void change(List<Double> stackData);
+    /**
+     * Affiche un élément empilé
+     */
+    void stackPushed(double value);
+    /**
+     * Retire l'élément dépilé
+     */
+    void stackPopped();
+    /**
+     * Remplace un élément de la pile, 0 étant le bas
+     */
+    void stackReplaced(int index, double value);
+    /**
+     * Affiche plusieurs éléments empilés, le dernier étant au sommet
+     */
+    void stackPushedAll(double[] values);
+    /**
+     * Retire plusieurs éléments dépilés
+     */
+    void stackPoppedAll(int count);
+    /**
+     * Remplace les éléments du sommet, le dernier étant au sommet
+     */
+    void stackReplacedTop(double[] values);
 }
\ No newline at end of file
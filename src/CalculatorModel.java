@@ -1,18 +1,46 @@
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Classe qui implémente le modèle de la calculatrice
  */
 public class CalculatorModel implements CalculatorModelInterface {
     
+    /** Nombre d'opérations annulables par défaut */
+    private static final int DEFAULT_JOURNAL_CAPACITY = 1000;
+    /** Nombre de valeurs sauvegardées par défaut pour annuler les opérations sur plusieurs éléments, soit 32 Mo */
+    private static final int DEFAULT_JOURNAL_SAVED_CAPACITY = 1 << 22;
+
     private double accu;
-    private Stack<Double> memory;
+    private DoubleStack memory;
+    private final ModelJournal journal;
+    private final List<StackListener> listeners = new ArrayList<>();
     /**
      *  Constructeur de Calculator Model
      */
     public CalculatorModel() {
+        this(DEFAULT_JOURNAL_CAPACITY);
+    }
+
+    /**
+     * Constructeur de Calculator Model avec une profondeur d'annulation donnée
+     * @param journalCapacity nombre maximal d'opérations annulables
+     */
+    public CalculatorModel(int journalCapacity) {
+        this(journalCapacity, DEFAULT_JOURNAL_SAVED_CAPACITY);
+    }
+
+    /**
+     * Constructeur de Calculator Model avec une profondeur d'annulation et une mémoire d'annulation données
+     * @param journalCapacity nombre maximal d'opérations annulables
+     * @param journalSavedCapacity nombre maximal de valeurs gardées pour annuler les opérations sur plusieurs éléments ;
+     * une opération qui en demande davantage ne peut pas être annulée et efface l'historique
+     */
+    public CalculatorModel(int journalCapacity, int journalSavedCapacity) {
         this.accu = 0.0;
-        this.memory = new Stack<>();
+        this.memory = new DoubleStack();
+        this.journal = new ModelJournal(journalCapacity, journalSavedCapacity);
     }
 
     /**
@@ -20,15 +48,27 @@ public class CalculatorModel implements CalculatorModelInterface {
      */
     @Override
     public void add(){
-        if (!this.memory.isEmpty()) {this.accu += this.memory.pop();}
+        if (!this.memory.isEmpty()) {
+            double old = this.accu;
+            double value = this.memory.pop();
+            this.accu += value;
+            journal.record(ModelJournal.POP, old, value, this.accu);
+            firePopped();
+        }
     }
 
     /**
      * Opération de soustraction entre le dernier élément de la pile et l'élément présent dans l'accumuateur
      */
     @Override
-    public void substract(){
-        if (!this.memory.isEmpty()) {this.accu -= this.memory.pop();}
+    public void subtract(){
+        if (!this.memory.isEmpty()) {
+            double old = this.accu;
+            double value = this.memory.pop();
+            this.accu -= value;
+            journal.record(ModelJournal.POP, old, value, this.accu);
+            firePopped();
+        }
     }
 
     /**
@@ -36,7 +76,13 @@ public class CalculatorModel implements CalculatorModelInterface {
      */
     @Override
     public void multiply(){
-        if (!this.memory.isEmpty()) {this.accu *= this.memory.pop();}
+        if (!this.memory.isEmpty()) {
+            double old = this.accu;
+            double value = this.memory.pop();
+            this.accu *= value;
+            journal.record(ModelJournal.POP, old, value, this.accu);
+            firePopped();
+        }
     }
 
     /**
@@ -44,7 +90,13 @@ public class CalculatorModel implements CalculatorModelInterface {
      */
     @Override
     public void divide(){
-        if (!this.memory.isEmpty()) {this.accu /= this.memory.pop();}
+        if (!this.memory.isEmpty()) {
+            double old = this.accu;
+            double value = this.memory.pop();
+            this.accu /= value;
+            journal.record(ModelJournal.POP, old, value, this.accu);
+            firePopped();
+        }
     }
 
     /**
@@ -52,7 +104,9 @@ public class CalculatorModel implements CalculatorModelInterface {
      */
     @Override
     public void opposite(){
+        double old = this.accu;
         this.accu = 1/this.accu;
+        journal.record(ModelJournal.ACCU, old, 0.0, this.accu);
     }
 
     /**
@@ -61,6 +115,8 @@ public class CalculatorModel implements CalculatorModelInterface {
     @Override
     public void push(){
         this.memory.push(accu);
+        journal.record(ModelJournal.PUSH, accu, accu, 0.0);
+        firePushed(accu);
         this.accu = 0;
     }
 
@@ -69,7 +125,12 @@ public class CalculatorModel implements CalculatorModelInterface {
      */
     @Override
     public void pop(){
-        if (!this.memory.isEmpty()) {this.accu = this.memory.pop();}
+        if (!this.memory.isEmpty()) {
+            double old = this.accu;
+            this.accu = this.memory.pop();
+            journal.record(ModelJournal.POP, old, this.accu, this.accu);
+            firePopped();
+        }
     }
 
     /**
@@ -77,7 +138,10 @@ public class CalculatorModel implements CalculatorModelInterface {
      */
     @Override
     public void drop(){
-        if (!this.memory.isEmpty()) {this.memory.pop();}
+        if (!this.memory.isEmpty()) {
+            journal.record(ModelJournal.POP, accu, this.memory.pop(), accu);
+            firePopped();
+        }
     }
 
     /**
@@ -87,8 +151,11 @@ public class CalculatorModel implements CalculatorModelInterface {
     public void swap(){
         if (!this.memory.isEmpty()) {
             double temp = this.accu;
-            this.accu = this.memory.pop();
-            this.memory.push(temp);
+            int top = this.memory.size() - 1;
+            this.accu = this.memory.get(top);
+            this.memory.set(top, temp);
+            journal.record(ModelJournal.SWAP, temp, this.accu, this.accu);
+            fireReplaced(top, temp);
         }
     }
 
@@ -97,9 +164,256 @@ public class CalculatorModel implements CalculatorModelInterface {
      */
     @Override
     public void clear(){
+        journal.record(ModelJournal.ACCU, accu, 0.0, 0.0);
         accu = 0.0;
     }
 
+    /**
+     * Remplace les n éléments du sommet par leur somme dans l'accumulateur, par sommation compensée
+     * @param n nombre d'éléments, la taille de la pile pour la pile entière
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    @Override
+    public void sum(int n) {
+        reduce(n, memory.sum(n));
+    }
+
+    /**
+     * Remplace les n éléments du sommet par leur produit dans l'accumulateur
+     * @param n nombre d'éléments, la taille de la pile pour la pile entière
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    @Override
+    public void product(int n) {
+        reduce(n, memory.product(n));
+    }
+
+    /**
+     * Remplace les n éléments du sommet par leur moyenne dans l'accumulateur
+     * @param n nombre d'éléments, la taille de la pile pour la pile entière
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    @Override
+    public void mean(int n) {
+        reduce(n, memory.mean(n));
+    }
+
+    /**
+     * Remplace les n éléments du sommet par leur variance empirique dans l'accumulateur
+     * @param n nombre d'éléments, la taille de la pile pour la pile entière
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    @Override
+    public void variance(int n) {
+        reduce(n, memory.variance(n));
+    }
+
+    /**
+     * Remplace les n éléments du sommet par leur minimum dans l'accumulateur
+     * @param n nombre d'éléments, la taille de la pile pour la pile entière
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    @Override
+    public void min(int n) {
+        reduce(n, memory.min(n));
+    }
+
+    /**
+     * Remplace les n éléments du sommet par leur maximum dans l'accumulateur
+     * @param n nombre d'éléments, la taille de la pile pour la pile entière
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    @Override
+    public void max(int n) {
+        reduce(n, memory.max(n));
+    }
+
+    /**
+     * Trie les n éléments du sommet par ordre croissant, le plus grand se retrouvant au sommet
+     * @param n nombre d'éléments, la taille de la pile pour la pile entière
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    @Override
+    public void sort(int n) {
+        checkCount(n);
+        double[] values = new double[2 * n];
+        memory.copyTop(n, values, 0);
+        memory.sort(n);
+        replaceTop(n, values);
+    }
+
+    /**
+     * Remplace chacun des n éléments du sommet par son image, évaluée par lots
+     * @param function expression compilée d'une seule variable
+     * @param n nombre d'éléments, la taille de la pile pour la pile entière
+     * @throws IllegalArgumentException si l'expression a plusieurs variables
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    @Override
+    public void map(CompiledExpression function, int n) {
+        if (!function.isSingleVariable())
+            throw new IllegalArgumentException("Expression d'une seule variable attendue : " + function.getSource());
+        checkCount(n);
+        double[] values = new double[2 * n];
+        memory.copyTop(n, values, 0);
+        memory.map(n, function::evaluate);
+        replaceTop(n, values);
+    }
+
+    /**
+     * Vérifie qu'une opération sur le sommet porte sur un nombre d'éléments présents dans la pile,
+     * avant toute allocation dépendant de n
+     */
+    private void checkCount(int n) {
+        if (n < 0 || n > memory.size())
+            throw new IndexOutOfBoundsException(n + " éléments demandés dans une pile de taille " + memory.size());
+    }
+
+    /**
+     * Dépile les n éléments du sommet et met le résultat calculé sur eux dans l'accumulateur
+     */
+    private void reduce(int n, double result) {
+        double[] removed = new double[n];
+        memory.copyTop(n, removed, 0);
+        memory.drop(n);
+        journal.recordBulk(ModelJournal.REDUCE, accu, result, removed, n);
+        accu = result;
+        firePoppedAll(n);
+    }
+
+    /**
+     * Enregistre le remplacement des n éléments du sommet, dont les anciennes valeurs sont au début de values
+     */
+    private void replaceTop(int n, double[] values) {
+        memory.copyTop(n, values, n);
+        journal.recordBulk(ModelJournal.REPLACE, accu, accu, values, 2 * n);
+        fireReplacedTop(Arrays.copyOfRange(values, n, 2 * n));
+    }
+
+    /**
+     * Annule la dernière opération, en temps constant quelle que soit la taille de la pile
+     * @return false s'il n'y a rien à annuler
+     */
+    @Override
+    public boolean undo(){
+        int slot = journal.undo();
+        if (slot < 0)
+            return false;
+        switch (journal.getKind(slot)) {
+            case ModelJournal.POP -> {
+                memory.push(journal.getValue(slot));
+                firePushed(journal.getValue(slot));
+            }
+            case ModelJournal.PUSH -> {
+                memory.pop();
+                firePopped();
+            }
+            case ModelJournal.SWAP -> {
+                memory.set(memory.size() - 1, journal.getValue(slot));
+                fireReplaced(memory.size() - 1, journal.getValue(slot));
+            }
+            case ModelJournal.REDUCE -> {
+                double[] removed = journal.getSaved(slot, 0, journal.getSavedCount(slot));
+                memory.pushAll(removed, 0, removed.length);
+                firePushedAll(removed);
+            }
+            case ModelJournal.REPLACE -> {
+                double[] old = journal.getSaved(slot, 0, journal.getSavedCount(slot) / 2);
+                memory.setTop(old, 0, old.length);
+                fireReplacedTop(old);
+            }
+            default -> { }
+        }
+        accu = journal.getOldAccu(slot);
+        return true;
+    }
+
+    /**
+     * Rétablit la dernière opération annulée
+     * @return false s'il n'y a rien à rétablir
+     */
+    @Override
+    public boolean redo(){
+        int slot = journal.redo();
+        if (slot < 0)
+            return false;
+        switch (journal.getKind(slot)) {
+            case ModelJournal.POP -> {
+                memory.pop();
+                firePopped();
+            }
+            case ModelJournal.PUSH -> {
+                memory.push(journal.getValue(slot));
+                firePushed(journal.getValue(slot));
+            }
+            case ModelJournal.SWAP -> {
+                memory.set(memory.size() - 1, journal.getOldAccu(slot));
+                fireReplaced(memory.size() - 1, journal.getOldAccu(slot));
+            }
+            case ModelJournal.REDUCE -> {
+                memory.drop(journal.getSavedCount(slot));
+                firePoppedAll(journal.getSavedCount(slot));
+            }
+            case ModelJournal.REPLACE -> {
+                int n = journal.getSavedCount(slot) / 2;
+                double[] values = journal.getSaved(slot, n, n);
+                memory.setTop(values, 0, n);
+                fireReplacedTop(values);
+            }
+            default -> { }
+        }
+        accu = journal.getNewAccu(slot);
+        return true;
+    }
+
+    /**
+     * Abonne un observateur aux modifications de la pile
+     * @param listener observateur notifié après chaque modification
+     */
+    @Override
+    public void addStackListener(StackListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Désabonne un observateur de la pile
+     * @param listener observateur à retirer
+     */
+    @Override
+    public void removeStackListener(StackListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void firePushed(double value) {
+        for (StackListener listener : listeners)
+            listener.pushed(value);
+    }
+
+    private void firePopped() {
+        for (StackListener listener : listeners)
+            listener.popped();
+    }
+
+    private void fireReplaced(int index, double value) {
+        for (StackListener listener : listeners)
+            listener.replaced(index, value);
+    }
+
+    private void firePushedAll(double[] values) {
+        for (StackListener listener : listeners)
+            listener.pushedAll(values);
+    }
+
+    private void firePoppedAll(int count) {
+        for (StackListener listener : listeners)
+            listener.poppedAll(count);
+    }
+
+    private void fireReplacedTop(double[] values) {
+        for (StackListener listener : listeners)
+            listener.replacedTop(values);
+    }
+
     /**
      * Getter pour l'accumulateur
      * @return l'accumulateur
@@ -111,11 +425,11 @@ public class CalculatorModel implements CalculatorModelInterface {
     
     /**
      * Getter pour la pile
-     * @return la pile
+     * @return une vue en lecture seule de la pile
      */
     @Override
-    public Stack<Double> getMemory() {
-        return memory;
+    public DoubleStackView getMemory() {
+        return memory.view();
     }
     
     /**
@@ -123,6 +437,8 @@ public class CalculatorModel implements CalculatorModelInterface {
      * @param accu la valeur de l'accumulateur
      */
     public void setAccu(double accu) {
+        // Une saisie directe n'est pas une opération annulable, mais rend caduques les opérations annulées
+        journal.discardRedo();
         this.accu = accu;
     }
 }
\ No newline at end of file
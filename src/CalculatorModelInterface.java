@@ -1,4 +1,3 @@
-import java.util.Stack;
 /**
  * Interface du modèle de la calculatrice
  */
@@ -43,14 +42,64 @@ public interface CalculatorModelInterface {
      *  Efface l'accu
      */
     void clear();
+    /**
+     *  Remplace les n éléments du sommet par leur somme dans l'accu
+     */
+    void sum(int n);
+    /**
+     *  Remplace les n éléments du sommet par leur produit dans l'accu
+     */
+    void product(int n);
+    /**
+     *  Remplace les n éléments du sommet par leur moyenne dans l'accu
+     */
+    void mean(int n);
+    /**
+     *  Remplace les n éléments du sommet par leur variance empirique dans l'accu
+     */
+    void variance(int n);
+    /**
+     *  Remplace les n éléments du sommet par leur minimum dans l'accu
+     */
+    void min(int n);
+    /**
+     *  Remplace les n éléments du sommet par leur maximum dans l'accu
+     */
+    void max(int n);
+    /**
+     *  Trie les n éléments du sommet, le plus grand au sommet
+     */
+    void sort(int n);
+    /**
+     *  Remplace chacun des n éléments du sommet par son image par une expression d'une variable
+     */
+    void map(CompiledExpression function, int n);
+    /**
+     *  Annule la dernière opération
+     *  @return false s'il n'y a rien à annuler
+     */
+    boolean undo();
+    /**
+     *  Rétablit la dernière opération annulée
+     *  @return false s'il n'y a rien à rétablir
+     */
+    boolean redo();
+    /**
+     *  Abonne un observateur aux modifications de la pile, notifié élément par élément
+     */
+    void addStackListener(StackListener listener);
+    /**
+     *  Désabonne un observateur de la pile
+     */
+    void removeStackListener(StackListener listener);
     /**
      *  Getter pour l'accu 
      */
     double getAccu();
     /**
-     *  Getter pour la pile
+     *  Getter pour la pile, en lecture seule
      */
-    Stack<Double> getMemory();
+    DoubleStackView getMemory();
     /**
      *  Setter pour l'accu
      */
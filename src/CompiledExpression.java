@@ -0,0 +1,326 @@
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Expression analysée une seule fois et réévaluable en n'importe quel point.
+ * Les variables sont résolues à la compilation en cases d'un cadre d'évaluation (x en case 0 par défaut),
+ * si bien que l'évaluation ne fait aucune recherche par nom.
+ * Les instances sont immuables et peuvent être partagées entre plusieurs threads.
+ */
+public final class CompiledExpression {
+    /** Nombre de points évalués par bloc, pour que les colonnes temporaires restent en cache */
+    private static final int BLOCK_SIZE = 1024;
+
+    private static final double[] NO_TEMPS = new double[0];
+
+    private final String source;
+    private final List<String> variables;
+    private final ExpressionNode root;
+    private final ExpressionNode plan;
+    private final int temps;
+    private final DoubleUnaryOperator function;
+    private final ToDoubleFunction<double[]> frameFunction;
+    private final boolean interpreted;
+    /**
+     * Colonnes de l'évaluation par lots, propres à chaque thread : celles du plan,
+     * suivies d'une colonne de sortie pour l'évaluation en place
+     */
+    private final ThreadLocal<double[][]> columns;
+    private final ExpressionEvaluator.Backend backend;
+    private volatile CompiledExpression derivative;
+
+    /**
+     * Construit une expression compilée de la seule variable x
+     * @param source expression littérale d'origine
+     * @param root racine de l'arbre syntaxique simplifié
+     * @param backend moteur d'évaluation ; BYTECODE retombe sur l'interpréteur si la génération échoue
+     */
+    CompiledExpression(String source, ExpressionNode root, ExpressionEvaluator.Backend backend) {
+        this(source, List.of("x"), root, backend);
+    }
+
+    /**
+     * Construit une expression compilée de plusieurs variables
+     * @param source expression littérale d'origine
+     * @param variables noms des variables, dans l'ordre de leurs cases
+     * @param root racine de l'arbre syntaxique simplifié
+     * @param backend moteur d'évaluation ; BYTECODE retombe sur l'interpréteur si la génération échoue
+     */
+    CompiledExpression(String source, List<String> variables, ExpressionNode root,
+            ExpressionEvaluator.Backend backend) {
+        this.source = source;
+        this.variables = List.copyOf(variables);
+        this.root = root;
+        // Les sous-expressions communes occupent les cases qui suivent celles des variables
+        this.plan = ExpressionOptimizer.eliminateCommonSubexpressions(root, variables.size());
+        this.temps = Math.max(variables.size(), plan.tempCount());
+        this.backend = backend;
+
+        DoubleUnaryOperator generated = null;
+        ToDoubleFunction<double[]> generatedFrame = null;
+        if (backend == ExpressionEvaluator.Backend.BYTECODE) {
+            try {
+                if (isSingleVariable())
+                    generated = BytecodeCompiler.compile(plan);
+                else
+                    generatedFrame = BytecodeCompiler.compileFrame(plan);
+            } catch (IllegalStateException e) {
+                // Expression trop grande ou génération refusée par la JVM : on garde l'interpréteur
+            }
+        }
+        if (isSingleVariable()) {
+            this.interpreted = generated == null;
+            this.function = interpreted ? interpreter(plan, temps) : generated;
+            DoubleUnaryOperator f = function;
+            this.frameFunction = env -> f.applyAsDouble(env[0]);
+        } else {
+            this.interpreted = generatedFrame == null;
+            this.function = null;
+            this.frameFunction = interpreted ? frameInterpreter(plan, variables.size(), temps) : generatedFrame;
+        }
+        int columnCount = temps + plan.scratchColumns() + 1;
+        this.columns = ThreadLocal.withInitial(() -> new double[columnCount][BLOCK_SIZE]);
+    }
+
+    /**
+     * Construit l'évaluation par parcours de l'arbre. Les cases temporaires des sous-expressions communes
+     * sont propres à chaque thread pour que l'expression reste partageable.
+     */
+    private static DoubleUnaryOperator interpreter(ExpressionNode plan, int temps) {
+        // La case 0 est celle de x, passé directement : seul un cadre de plus d'une case est utile
+        if (temps <= 1)
+            return x -> plan.evaluate(x, NO_TEMPS);
+        ThreadLocal<double[]> frames = ThreadLocal.withInitial(() -> new double[temps]);
+        return x -> plan.evaluate(x, frames.get());
+    }
+
+    /**
+     * Construit l'évaluation par parcours de l'arbre d'une expression de plusieurs variables.
+     * Sans sous-expression commune, le tableau des variables sert directement de cadre.
+     */
+    private static ToDoubleFunction<double[]> frameInterpreter(ExpressionNode plan, int count, int temps) {
+        if (temps == count)
+            return env -> plan.evaluate(env[0], env);
+        ThreadLocal<double[]> frames = ThreadLocal.withInitial(() -> new double[temps]);
+        return env -> {
+            double[] frame = frames.get();
+            System.arraycopy(env, 0, frame, 0, count);
+            return plan.evaluate(env[0], frame);
+        };
+    }
+
+    /**
+     * Evalue l'expression en un point x, sans allocation
+     * @param x point x
+     * @return valeur de f en x
+     * @throws IllegalStateException si l'expression a plusieurs variables
+     */
+    public double evaluate(double x) {
+        requireSingleVariable();
+        return function.applyAsDouble(x);
+    }
+
+    /**
+     * Evalue l'expression pour des valeurs données de ses variables, sans allocation
+     * @param env valeurs des variables, dans l'ordre de getVariables()
+     * @return valeur de l'expression
+     */
+    public double evaluate(double[] env) {
+        if (env.length < variables.size())
+            throw new IndexOutOfBoundsException(variables.size() + " variables attendues, " + env.length + " fournies");
+        return frameFunction.applyAsDouble(env);
+    }
+
+    /**
+     * Evalue l'expression sur tout un tableau de points.
+     * L'interpréteur évalue chaque noeud sur une colonne de points à la fois plutôt que point par point.
+     * @param xs points x
+     * @param out tableau de sortie, de même longueur que xs au minimum ; peut être xs lui-même
+     */
+    public void evaluate(double[] xs, double[] out) {
+        evaluate(xs, 0, out, 0, xs.length);
+    }
+
+    /**
+     * Evalue l'expression sur une partie d'un tableau de points.
+     * La sortie peut recouvrir les points : chaque bloc est alors calculé dans une colonne à part
+     * avant d'être recopié, pour qu'aucun point ne soit écrasé avant d'avoir été lu.
+     * Les colonnes de travail sont allouées une fois par thread et réutilisées d'un appel à l'autre.
+     * @param xs points x
+     * @param xsOffset indice du premier point dans xs
+     * @param out tableau de sortie
+     * @param outOffset indice de la première valeur dans out
+     * @param n nombre de points
+     */
+    public void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int n) {
+        requireSingleVariable();
+        if (xsOffset < 0 || outOffset < 0 || n < 0 || xsOffset + n > xs.length || outOffset + n > out.length)
+            throw new IndexOutOfBoundsException("Tableaux trop courts pour " + n + " points");
+
+        boolean overlap = xs == out && xsOffset < outOffset + n && outOffset < xsOffset + n;
+        if (overlap && xsOffset != outOffset) {
+            // Plages décalées : un bloc écrirait sur les points des blocs suivants, on part d'une copie
+            xs = Arrays.copyOfRange(xs, xsOffset, xsOffset + n);
+            xsOffset = 0;
+            overlap = false;
+        }
+
+        if (!interpreted) {
+            // Point par point, chaque point est lu avant que sa propre case soit écrite
+            for (int i = 0; i < n; i++)
+                out[outOffset + i] = function.applyAsDouble(xs[xsOffset + i]);
+            return;
+        }
+
+        double[][] scratch = columns.get();
+        double[] result = scratch[scratch.length - 1];
+        for (int done = 0; done < n; done += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, n - done);
+            if (overlap) {
+                plan.evaluate(xs, xsOffset + done, result, 0, length, scratch, temps);
+                System.arraycopy(result, 0, out, outOffset + done, length);
+            } else {
+                plan.evaluate(xs, xsOffset + done, out, outOffset + done, length, scratch, temps);
+            }
+        }
+    }
+
+    /**
+     * Evalue l'expression sur les points restants d'un tampon.
+     * Les positions des deux tampons avancent du nombre de points évalués.
+     * @param xs points x
+     * @param out tampon de sortie, avec au moins xs.remaining() places libres
+     */
+    public void evaluate(DoubleBuffer xs, DoubleBuffer out) {
+        requireSingleVariable();
+        int n = xs.remaining();
+        if (out.remaining() < n)
+            throw new IndexOutOfBoundsException("Tampon de sortie trop court pour " + n + " points");
+
+        if (xs.hasArray() && out.hasArray() && !out.isReadOnly()) {
+            evaluate(xs.array(), xs.arrayOffset() + xs.position(), out.array(), out.arrayOffset() + out.position(), n);
+            xs.position(xs.position() + n);
+            out.position(out.position() + n);
+            return;
+        }
+
+        // Tampons directs ou mappés : on passe par des blocs sur le tas
+        double[] in = new double[Math.min(n, BLOCK_SIZE)];
+        double[] values = new double[in.length];
+        while (xs.hasRemaining()) {
+            int length = Math.min(in.length, xs.remaining());
+            xs.get(in, 0, length);
+            evaluate(in, 0, values, 0, length);
+            out.put(values, 0, length);
+        }
+    }
+
+    /**
+     * Taille du tampon nécessaire à {@link #evaluateDual(double, double[])}
+     * @return nombre de cases du tampon
+     */
+    public int dualBufferSize() {
+        return 2 * (plan.scratchColumns() + 1 + temps);
+    }
+
+    /**
+     * Evalue f(x) et f'(x) en une seule passe sur des nombres duaux, sans allocation.
+     * Le tampon peut être réutilisé d'un appel à l'autre, mais pas partagé entre threads.
+     * @param x point x
+     * @param buffer tampon d'au moins dualBufferSize() cases ; f(x) est écrit en 0 et f'(x) en 1
+     */
+    public void evaluateDual(double x, double[] buffer) {
+        requireSingleVariable();
+        if (buffer.length < dualBufferSize())
+            throw new IndexOutOfBoundsException("Tampon trop court : " + dualBufferSize() + " cases nécessaires");
+        plan.evaluateDual(x, buffer, 0, 2 * (plan.scratchColumns() + 1));
+    }
+
+    /**
+     * Taille du tampon nécessaire à {@link #evaluateInterval(double, double, double[])}
+     * @return nombre de cases du tampon
+     */
+    public int intervalBufferSize() {
+        return dualBufferSize();
+    }
+
+    /**
+     * Calcule un encadrement garanti de f sur [lower, upper], sans allocation.
+     * L'encadrement est [-∞, +∞] si l'intervalle contient une asymptote (tan, division par un intervalle contenant 0),
+     * et [NaN, NaN] si f n'est définie en aucun point de l'intervalle.
+     * @param lower borne inférieure de x
+     * @param upper borne supérieure de x
+     * @param buffer tampon d'au moins intervalBufferSize() cases ; les bornes de f sont écrites en 0 et 1
+     */
+    public void evaluateInterval(double lower, double upper, double[] buffer) {
+        requireSingleVariable();
+        if (buffer.length < intervalBufferSize())
+            throw new IndexOutOfBoundsException("Tampon trop court : " + intervalBufferSize() + " cases nécessaires");
+        plan.evaluateInterval(lower, upper, buffer, 0, 2 * (plan.scratchColumns() + 1));
+    }
+
+    /**
+     * Dérivée symbolique de l'expression par rapport à sa première variable, simplifiée et compilée avec le même moteur.
+     * Elle est calculée au premier appel puis conservée.
+     * @return la dérivée compilée
+     */
+    public CompiledExpression derivative() {
+        CompiledExpression result = derivative;
+        if (result == null) {
+            ExpressionNode tree = ExpressionOptimizer.simplify(ExpressionDerivative.differentiate(root));
+            result = new CompiledExpression("(" + source + ")'", variables, tree, backend);
+            derivative = result;
+        }
+        return result;
+    }
+
+    /**
+     * Retourne l'expression sous forme d'opérateur, pour les traitements par lots
+     * @return l'opérateur x -> f(x)
+     * @throws IllegalStateException si l'expression a plusieurs variables
+     */
+    public DoubleUnaryOperator asOperator() {
+        requireSingleVariable();
+        return function;
+    }
+
+    /**
+     * Indique si l'expression ne dépend que de x, et peut donc être évaluée point par point ou par lots
+     * @return true pour une expression d'une seule variable
+     */
+    public boolean isSingleVariable() {
+        return variables.size() == 1;
+    }
+
+    /**
+     * Getter pour les noms des variables, dans l'ordre de leurs cases
+     * @return la liste non modifiable des variables
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Getter pour l'expression littérale d'origine
+     * @return l'expression littérale
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Getter pour la racine de l'arbre syntaxique simplifié, sans mise en commun des sous-expressions
+     * @return la racine de l'arbre
+     */
+    public ExpressionNode getRoot() {
+        return root;
+    }
+
+    private void requireSingleVariable() {
+        if (!isSingleVariable())
+            throw new IllegalStateException("Expression de " + variables.size() + " variables : utiliser evaluate(double[])");
+    }
+}
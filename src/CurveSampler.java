@@ -0,0 +1,230 @@
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Echantillonnage adaptatif d'une courbe y = f(x) pour l'affichage.
+ * Un point est calculé par colonne de pixels au plus, sur la grille dyadique d'un {@link SampleCache}
+ * pour que les points déjà calculés par un tracé précédent soient repris, puis chaque segment est subdivisé tant que la courbe s'écarte
+ * de sa corde de plus d'un demi-pixel ou qu'une borne du domaine de définition s'y trouve.
+ * Les asymptotes, repérées par arithmétique d'intervalles, coupent la courbe par un point NaN.
+ * Les tampons sont réutilisés d'un échantillonnage à l'autre : une instance ne doit pas être partagée entre threads.
+ */
+public final class CurveSampler {
+    /** Nombre maximal de subdivisions d'une colonne de pixels */
+    private static final int MAX_DEPTH = 8;
+    /** Nombre moyen de points ajoutés par colonne au-delà duquel on arrête de subdiviser */
+    private static final int REFINEMENT_BUDGET = 8;
+    /** Ecart maximal entre la courbe et sa corde, en pixels */
+    private static final double TOLERANCE = 0.5;
+
+    private double[] gridXs = new double[0];
+    private double[] gridYs = new double[0];
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private double[] interval = new double[0];
+    private int gridSize;
+    private int size;
+    private int evaluations;
+
+    private CompiledExpression function;
+    private DoubleUnaryOperator operator;
+    private double ymin;
+    private double ymax;
+    private double pixelsPerUnit;
+    private int budget;
+
+    /**
+     * Echantillonne f sur [xmin, xmax] pour une zone d'affichage de columns x rows pixels
+     * @param f expression compilée d'une seule variable
+     * @param xmin bord gauche de la zone
+     * @param xmax bord droit de la zone
+     * @param ymin bord bas de la zone
+     * @param ymax bord haut de la zone
+     * @param columns largeur de la zone en pixels
+     * @param rows hauteur de la zone en pixels
+     * @return nombre de points produits, lus ensuite avec getXs() et getYs()
+     * @throws CancellationException si le thread appelant est interrompu pendant l'échantillonnage
+     */
+    public int sample(CompiledExpression f, double xmin, double xmax, double ymin, double ymax, int columns, int rows) {
+        return sample(new SampleCache(f), xmin, xmax, ymin, ymax, columns, rows);
+    }
+
+    /**
+     * Echantillonne l'expression d'un cache sur [xmin, xmax] pour une zone d'affichage de columns x rows pixels.
+     * Les points de la grille déjà présents dans le cache ne sont pas réévalués, et ceux calculés y sont ajoutés.
+     * @param cache valeurs déjà calculées de l'expression
+     * @param xmin bord gauche de la zone
+     * @param xmax bord droit de la zone
+     * @param ymin bord bas de la zone
+     * @param ymax bord haut de la zone
+     * @param columns largeur de la zone en pixels
+     * @param rows hauteur de la zone en pixels
+     * @return nombre de points produits, lus ensuite avec getXs() et getYs()
+     * @throws CancellationException si le thread appelant est interrompu pendant l'échantillonnage
+     */
+    public int sample(SampleCache cache, double xmin, double xmax, double ymin, double ymax, int columns, int rows) {
+        if (columns < 1 || rows < 1)
+            throw new IllegalArgumentException("Zone d'affichage vide : " + columns + "x" + rows);
+        CompiledExpression f = cache.getFunction();
+        this.function = f;
+        this.operator = f.asOperator();
+        this.ymin = ymin;
+        this.ymax = ymax;
+        this.pixelsPerUnit = rows / (ymax - ymin);
+        this.budget = columns * REFINEMENT_BUDGET;
+        if (interval.length < f.intervalBufferSize())
+            interval = new double[f.intervalBufferSize()];
+
+        // Grille dyadique d'au plus un point par colonne, dont seuls les points nouveaux sont évalués
+        int level = SampleCache.level((xmax - xmin) / columns);
+        long first;
+        int n;
+        do {
+            double step = Math.scalb(1.0, level--);
+            first = (long) Math.ceil(xmin / step);
+            n = (int) ((long) Math.floor(xmax / step) - first + 1);
+        } while (n < 2);
+        level++;
+        gridSize = n;
+        if (gridXs.length < n) {
+            gridXs = new double[n];
+            gridYs = new double[n];
+        }
+        cache.values(level, first, n, gridXs, gridYs);
+        evaluations = cache.getEvaluationCount();
+
+        size = 0;
+        append(gridXs[0], gridYs[0]);
+        for (int i = 1; i < n; i++) {
+            if (Thread.currentThread().isInterrupted())
+                throw new CancellationException("Echantillonnage interrompu");
+            if (isSmooth(i))
+                append(gridXs[i], gridYs[i]);
+            else
+                refine(gridXs[i - 1], gridYs[i - 1], gridXs[i], gridYs[i], 0);
+        }
+
+        function = null;
+        operator = null;
+        return size;
+    }
+
+    /**
+     * Indique si le segment de la grille entre les points i - 1 et i peut être tracé tel quel.
+     * Sur une colonne, l'écart entre la courbe et sa corde vaut environ le huitième de la différence seconde
+     * des points voisins, ce qui évite d'évaluer le milieu des segments presque droits.
+     */
+    private boolean isSmooth(int i) {
+        double y0 = gridYs[i - 1];
+        double y1 = gridYs[i];
+        if (Double.isFinite(y0) != Double.isFinite(y1))
+            return false;
+        if (!Double.isFinite(y0))
+            return true;
+        if ((y0 > ymax && y1 > ymax) || (y0 < ymin && y1 < ymin))
+            return true;
+        return isFlat(i - 1) && isFlat(i);
+    }
+
+    /**
+     * Indique si la courbe est presque droite autour du point i de la grille
+     */
+    private boolean isFlat(int i) {
+        if (i == 0 || i == gridSize - 1)
+            return true;
+        double secondDifference = gridYs[i - 1] - 2 * gridYs[i] + gridYs[i + 1];
+        // Une différence seconde NaN (point voisin hors du domaine) est traitée par le test sur les extrémités
+        return !(Math.abs(secondDifference) * pixelsPerUnit / 8 > TOLERANCE);
+    }
+
+    /**
+     * Ajoute les points de ]x0, x1], en subdivisant le segment si nécessaire
+     */
+    private void refine(double x0, double y0, double x1, double y1, int depth) {
+        double xm = 0.5 * (x0 + x1);
+        double ym = operator.applyAsDouble(xm);
+        evaluations++;
+        if (needsRefinement(y0, ym, y1)) {
+            if (depth < MAX_DEPTH && budget > 0) {
+                budget--;
+                refine(x0, y0, xm, ym, depth + 1);
+                refine(xm, ym, x1, y1, depth + 1);
+                return;
+            }
+            // Segment encore trop raide à la résolution maximale : on coupe la courbe s'il contient une asymptote
+            if (isDiscontinuous(x0, x1))
+                ym = Double.NaN;
+        }
+        append(xm, ym);
+        append(x1, y1);
+    }
+
+    /**
+     * Indique si le segment doit être subdivisé au vu de ses extrémités et de son milieu
+     */
+    private boolean needsRefinement(double y0, double ym, double y1) {
+        boolean f0 = Double.isFinite(y0);
+        boolean fm = Double.isFinite(ym);
+        boolean f1 = Double.isFinite(y1);
+        if (f0 != fm || fm != f1)
+            return true; // bord du domaine de définition
+        if (!fm)
+            return false;
+        if ((y0 > ymax && ym > ymax && y1 > ymax) || (y0 < ymin && ym < ymin && y1 < ymin))
+            return false; // segment hors de la zone d'affichage
+        return Math.abs(ym - 0.5 * (y0 + y1)) * pixelsPerUnit > TOLERANCE;
+    }
+
+    /**
+     * Indique si f n'est pas bornée sur [x0, x1], c'est-à-dire si l'intervalle contient une asymptote
+     */
+    private boolean isDiscontinuous(double x0, double x1) {
+        function.evaluateInterval(x0, x1, interval);
+        evaluations++;
+        return Double.isInfinite(interval[0]) || Double.isInfinite(interval[1]);
+    }
+
+    private void append(double x, double y) {
+        if (size == xs.length) {
+            int capacity = Math.max(16, 2 * size);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    /**
+     * Getter pour les abscisses des points produits par le dernier échantillonnage, croissantes
+     * @return tableau dont seules les size() premières cases sont significatives
+     */
+    public double[] getXs() {
+        return xs;
+    }
+
+    /**
+     * Getter pour les ordonnées des points produits par le dernier échantillonnage ; NaN marque une coupure
+     * @return tableau dont seules les size() premières cases sont significatives
+     */
+    public double[] getYs() {
+        return ys;
+    }
+
+    /**
+     * Nombre de points produits par le dernier échantillonnage
+     * @return nombre de points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Nombre d'évaluations de f faites par le dernier échantillonnage, hors points repris du cache
+     * @return nombre d'évaluations
+     */
+    public int getEvaluationCount() {
+        return evaluations;
+    }
+}
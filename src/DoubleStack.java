@@ -0,0 +1,443 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Pile de doubles stockée dans un tableau primitif qui grandit au besoin.
+ * Empiler et dépiler ne font ni boxing ni allocation tant que la capacité suffit, et ne prennent aucun verrou :
+ * une instance ne doit pas être modifiée par plusieurs threads à la fois.
+ * Les opérations sur les n éléments du sommet (somme, produit, statistiques, tri, application d'une fonction)
+ * sont des boucles directes sur le tableau, découpées en blocs traités en parallèle au-delà d'une certaine taille.
+ */
+public final class DoubleStack implements DoubleStackView {
+    private static final int DEFAULT_CAPACITY = 16;
+    /** Nombre d'éléments à partir duquel les opérations sur le sommet sont parallélisées */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    /** Taille d'un bloc traité par une seule tâche */
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    /**
+     * Fonction appliquée à un bloc de valeurs, comme l'évaluation par lots d'une expression compilée
+     */
+    public interface BatchFunction {
+        /**
+         * Calcule les images de n valeurs
+         * @param in valeurs d'entrée
+         * @param inOffset indice de la première valeur dans in
+         * @param out tableau de sortie, distinct de in
+         * @param outOffset indice de la première image dans out
+         * @param n nombre de valeurs
+         */
+        void apply(double[] in, int inOffset, double[] out, int outOffset, int n);
+    }
+
+    private double[] values;
+    private int size;
+    private final DoubleStackView view = new DoubleStackView() {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public double get(int index) {
+            return DoubleStack.this.get(index);
+        }
+
+        @Override
+        public double peek() {
+            return DoubleStack.this.peek();
+        }
+
+        @Override
+        public double[] toArray() {
+            return DoubleStack.this.toArray();
+        }
+
+        @Override
+        public String toString() {
+            return DoubleStack.this.toString();
+        }
+    };
+
+    /**
+     * Construit une pile vide
+     */
+    public DoubleStack() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construit une pile vide avec une capacité initiale donnée
+     * @param capacity nombre d'éléments avant le premier agrandissement
+     */
+    public DoubleStack(int capacity) {
+        this.values = new double[Math.max(1, capacity)];
+    }
+
+    /**
+     * Empile un élément
+     * @param value élément à empiler
+     */
+    public void push(double value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, 2 * size);
+        values[size++] = value;
+    }
+
+    /**
+     * Dépile l'élément au sommet
+     * @return l'élément dépilé
+     * @throws NoSuchElementException si la pile est vide
+     */
+    public double pop() {
+        if (size == 0)
+            throw new NoSuchElementException("Pile vide");
+        return values[--size];
+    }
+
+    @Override
+    public double peek() {
+        if (size == 0)
+            throw new NoSuchElementException("Pile vide");
+        return values[size - 1];
+    }
+
+    @Override
+    public double get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Position " + index + " hors de la pile de taille " + size);
+        return values[index];
+    }
+
+    /**
+     * Remplace l'élément à une position donnée, 0 étant le bas de la pile
+     * @param index position de l'élément
+     * @param value nouvelle valeur
+     * @throws IndexOutOfBoundsException si la position est hors de la pile
+     */
+    public void set(int index, double value) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Position " + index + " hors de la pile de taille " + size);
+        values[index] = value;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Empile plusieurs éléments, le dernier se retrouvant au sommet
+     * @param src éléments à empiler
+     * @param from indice du premier élément dans src
+     * @param n nombre d'éléments
+     */
+    public void pushAll(double[] src, int from, int n) {
+        if (size + n > values.length)
+            values = Arrays.copyOf(values, Math.max(2 * values.length, size + n));
+        System.arraycopy(src, from, values, size, n);
+        size += n;
+    }
+
+    /**
+     * Dépile les n éléments du sommet
+     * @param n nombre d'éléments à retirer
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public void drop(int n) {
+        checkCount(n);
+        size -= n;
+    }
+
+    /**
+     * Copie les n éléments du sommet, du plus bas au sommet
+     * @param n nombre d'éléments
+     * @param dst tableau de destination
+     * @param offset indice de la première copie dans dst
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public void copyTop(int n, double[] dst, int offset) {
+        checkCount(n);
+        System.arraycopy(values, size - n, dst, offset, n);
+    }
+
+    /**
+     * Remplace les n éléments du sommet, le dernier élément de src allant au sommet
+     * @param src nouvelles valeurs
+     * @param from indice de la première valeur dans src
+     * @param n nombre d'éléments
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public void setTop(double[] src, int from, int n) {
+        checkCount(n);
+        System.arraycopy(src, from, values, size - n, n);
+    }
+
+    /**
+     * Somme des n éléments du sommet, par sommation compensée de Kahan-Babuška
+     * pour que l'erreur d'arrondi ne croisse pas avec le nombre d'éléments
+     * @param n nombre d'éléments, 0 donnant 0
+     * @return la somme
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public double sum(int n) {
+        checkCount(n);
+        return compensatedSum(n, 0.0, false);
+    }
+
+    /**
+     * Produit des n éléments du sommet
+     * @param n nombre d'éléments, 0 donnant 1
+     * @return le produit
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public double product(int n) {
+        checkCount(n);
+        int from = size - n;
+        double[] partials = new double[chunkCount(n)];
+        forEachChunk(from, n, (chunk, start, end) -> {
+            double product = 1.0;
+            for (int i = start; i < end; i++)
+                product *= values[i];
+            partials[chunk] = product;
+        });
+        double product = 1.0;
+        for (double partial : partials)
+            product *= partial;
+        return product;
+    }
+
+    /**
+     * Moyenne des n éléments du sommet
+     * @param n nombre d'éléments
+     * @return la moyenne, NaN si n vaut 0
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public double mean(int n) {
+        return sum(n) / n;
+    }
+
+    /**
+     * Variance empirique (divisée par n - 1) des n éléments du sommet, en deux passages :
+     * la moyenne, puis les carrés des écarts à la moyenne, corrigés de l'erreur d'arrondi sur celle-ci
+     * @param n nombre d'éléments
+     * @return la variance, NaN si n vaut moins de 2
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public double variance(int n) {
+        checkCount(n);
+        if (n < 2)
+            return Double.NaN;
+        double mean = compensatedSum(n, 0.0, false) / n;
+        double squares = compensatedSum(n, mean, true);
+        double deviations = compensatedSum(n, mean, false);
+        return Math.max(0.0, (squares - deviations * deviations / n) / (n - 1));
+    }
+
+    /**
+     * Plus petit des n éléments du sommet
+     * @param n nombre d'éléments
+     * @return le minimum, NaN si l'un des éléments l'est, +infini si n vaut 0
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public double min(int n) {
+        checkCount(n);
+        double[] partials = new double[chunkCount(n)];
+        forEachChunk(size - n, n, (chunk, start, end) -> {
+            double min = Double.POSITIVE_INFINITY;
+            for (int i = start; i < end; i++)
+                min = Math.min(min, values[i]);
+            partials[chunk] = min;
+        });
+        double min = Double.POSITIVE_INFINITY;
+        for (double partial : partials)
+            min = Math.min(min, partial);
+        return min;
+    }
+
+    /**
+     * Plus grand des n éléments du sommet
+     * @param n nombre d'éléments
+     * @return le maximum, NaN si l'un des éléments l'est, -infini si n vaut 0
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public double max(int n) {
+        checkCount(n);
+        double[] partials = new double[chunkCount(n)];
+        forEachChunk(size - n, n, (chunk, start, end) -> {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = start; i < end; i++)
+                max = Math.max(max, values[i]);
+            partials[chunk] = max;
+        });
+        double max = Double.NEGATIVE_INFINITY;
+        for (double partial : partials)
+            max = Math.max(max, partial);
+        return max;
+    }
+
+    /**
+     * Trie les n éléments du sommet par ordre croissant, le plus grand se retrouvant au sommet
+     * @param n nombre d'éléments
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public void sort(int n) {
+        checkCount(n);
+        if (n >= PARALLEL_THRESHOLD)
+            Arrays.parallelSort(values, size - n, size);
+        else
+            Arrays.sort(values, size - n, size);
+    }
+
+    /**
+     * Remplace chacun des n éléments du sommet par son image, bloc par bloc
+     * @param n nombre d'éléments
+     * @param function fonction appliquée, qui peut être appelée depuis plusieurs threads à la fois
+     * @throws IndexOutOfBoundsException si la pile contient moins de n éléments
+     */
+    public void map(int n, BatchFunction function) {
+        checkCount(n);
+        forEachChunk(size - n, n, (chunk, start, end) -> {
+            double[] out = new double[Math.min(CHUNK_SIZE, end - start)];
+            for (int done = start; done < end; done += out.length) {
+                int length = Math.min(out.length, end - done);
+                function.apply(values, done, out, 0, length);
+                System.arraycopy(out, 0, values, done, length);
+            }
+        });
+    }
+
+    /**
+     * Vide la pile sans libérer sa capacité
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    @Override
+    public double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Vue en lecture seule de cette pile, qui suit ses modifications
+     * @return la vue, toujours la même instance
+     */
+    public DoubleStackView view() {
+        return view;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private void checkCount(int n) {
+        if (n < 0 || n > size)
+            throw new IndexOutOfBoundsException(n + " éléments demandés dans une pile de taille " + size);
+    }
+
+    /**
+     * Somme compensée des (x - shift) ou de leurs carrés sur les n éléments du sommet.
+     * Chaque bloc accumule sa somme et sa compensation, puis les blocs sont combinés de la même façon.
+     */
+    private double compensatedSum(int n, double shift, boolean squares) {
+        int chunks = chunkCount(n);
+        double[] sums = new double[chunks];
+        double[] compensations = new double[chunks];
+        forEachChunk(size - n, n, (chunk, start, end) -> {
+            double sum = 0.0;
+            double compensation = 0.0;
+            for (int i = start; i < end; i++) {
+                double x = values[i] - shift;
+                if (squares)
+                    x *= x;
+                double t = sum + x;
+                // Partie de la plus petite des deux valeurs perdue dans l'arrondi de t
+                compensation += Math.abs(sum) >= Math.abs(x) ? (sum - t) + x : (x - t) + sum;
+                sum = t;
+            }
+            sums[chunk] = sum;
+            compensations[chunk] = compensation;
+        });
+
+        double sum = 0.0;
+        double compensation = 0.0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            double x = sums[chunk];
+            double t = sum + x;
+            compensation += (Math.abs(sum) >= Math.abs(x) ? (sum - t) + x : (x - t) + sum) + compensations[chunk];
+            sum = t;
+        }
+        return sum + compensation;
+    }
+
+    /**
+     * Nombre de blocs pour n éléments : un seul en dessous du seuil de parallélisation
+     */
+    private static int chunkCount(int n) {
+        return n < PARALLEL_THRESHOLD ? 1 : (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    /**
+     * Traite les éléments [from, from + n[ bloc par bloc, sur le pool commun s'il y a plusieurs blocs
+     */
+    private static void forEachChunk(int from, int n, ChunkAction action) {
+        int chunks = chunkCount(n);
+        if (chunks == 1)
+            action.apply(0, from, from + n);
+        else
+            ForkJoinPool.commonPool().invoke(new ChunkTask(0, chunks, from, from + n, action));
+    }
+
+    /**
+     * Traitement d'un bloc d'éléments
+     */
+    private interface ChunkAction {
+        void apply(int chunk, int start, int end);
+    }
+
+    /**
+     * Traite les blocs [first, last[ en se redécoupant jusqu'à un bloc par tâche
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int first;
+        private final int last;
+        private final int from;
+        private final int to;
+        private final ChunkAction action;
+
+        ChunkTask(int first, int last, int from, int to, ChunkAction action) {
+            this.first = first;
+            this.last = last;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new ChunkTask(first, middle, from, to, action), new ChunkTask(middle, last, from, to, action));
+            } else if (first < last) {
+                int start = from + first * CHUNK_SIZE;
+                action.apply(first, start, Math.min(start + CHUNK_SIZE, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Vue en lecture seule d'une pile de doubles
+ */
+public interface DoubleStackView {
+    /**
+     * Nombre d'éléments de la pile
+     * @return taille de la pile
+     */
+    int size();
+
+    /**
+     * Indique si la pile est vide
+     * @return true si la pile ne contient aucun élément
+     */
+    boolean isEmpty();
+
+    /**
+     * Elément à une position donnée, 0 étant le bas de la pile
+     * @param index position de l'élément
+     * @return l'élément
+     * @throws IndexOutOfBoundsException si la position est hors de la pile
+     */
+    double get(int index);
+
+    /**
+     * Elément au sommet de la pile
+     * @return l'élément au sommet
+     * @throws java.util.NoSuchElementException si la pile est vide
+     */
+    double peek();
+
+    /**
+     * Copie des éléments, du bas vers le sommet de la pile
+     * @return un nouveau tableau
+     */
+    double[] toArray();
+}
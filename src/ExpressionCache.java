@@ -0,0 +1,115 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache LRU borné et partagé entre threads des expressions compilées, indexé par leur texte exact :
+ * deux textes différents ne partagent jamais une entrée, si bien que le résultat d'une compilation
+ * ne dépend pas de ce qui a déjà été compilé
+ */
+public class ExpressionCache {
+    private final int capacity;
+    private final LinkedHashMap<String, CompiledExpression> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Construit un cache vide
+     * @param capacity nombre maximal d'expressions conservées
+     */
+    public ExpressionCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacité invalide : " + capacity);
+        this.capacity = capacity;
+        // accessOrder = true : chaque lecture replace l'entrée en fin de liste, la plus ancienne est en tête
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                if (size() > ExpressionCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retourne l'expression compilée associée à la clé, en la compilant si elle est absente.
+     * La compilation se fait hors du verrou : deux threads peuvent compiler la même expression en même temps,
+     * le premier résultat inséré est conservé.
+     * @param key texte de l'expression, précédé de ses variables
+     * @param compiler fonction de compilation appelée en cas d'absence
+     * @return l'expression compilée
+     */
+    public CompiledExpression get(String key, Function<String, CompiledExpression> compiler) {
+        synchronized (this) {
+            CompiledExpression cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        CompiledExpression compiled = compiler.apply(key);
+        synchronized (this) {
+            CompiledExpression previous = entries.putIfAbsent(key, compiled);
+            return previous != null ? previous : compiled;
+        }
+    }
+
+    /**
+     * Vide le cache sans remettre les compteurs à zéro
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Nombre d'expressions actuellement en cache
+     * @return taille du cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Nombre maximal d'expressions conservées
+     * @return capacité du cache
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Nombre de recherches satisfaites par le cache
+     * @return nombre de succès
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Nombre de recherches ayant nécessité une compilation
+     * @return nombre d'échecs
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Nombre d'expressions retirées pour respecter la capacité
+     * @return nombre d'évictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ExpressionCache[taille=" + entries.size() + "/" + capacity + ", succès=" + hits
+                + ", échecs=" + misses + ", évictions=" + evictions + "]";
+    }
+}
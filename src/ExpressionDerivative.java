@@ -0,0 +1,126 @@
+/**
+ * Dérivation symbolique par rapport à la première variable (x) de l'arbre d'une expression
+ */
+public class ExpressionDerivative {
+
+    private ExpressionDerivative() {}
+
+    /**
+     * Construit l'arbre de la dérivée. Les termes dont la dérivée est exactement nulle ne sont pas générés,
+     * l'arbre obtenu est ensuite à simplifier par {@link ExpressionOptimizer#simplify}.
+     * @param node racine de l'arbre simplifié (sans sous-expressions communes)
+     * @return racine de l'arbre de la dérivée
+     */
+    public static ExpressionNode differentiate(ExpressionNode node) {
+        if (node instanceof ExpressionNode.Constant)
+            return constant(0.0);
+        if (node instanceof ExpressionNode.Variable variable)
+            return constant(variable.getSlot() == 0 ? 1.0 : 0.0);
+        if (node instanceof ExpressionNode.Negate negate)
+            return negate(differentiate(negate.getOperand()));
+        if (node instanceof ExpressionNode.Binary binary)
+            return differentiateBinary(binary);
+        if (node instanceof ExpressionNode.Call call)
+            return differentiateCall(call);
+        throw new IllegalArgumentException("Noeud non dérivable : " + node.getClass().getSimpleName());
+    }
+
+    /**
+     * Dérive une opération binaire
+     */
+    private static ExpressionNode differentiateBinary(ExpressionNode.Binary binary) {
+        ExpressionNode u = binary.getLeft();
+        ExpressionNode v = binary.getRight();
+        ExpressionNode du = differentiate(u);
+        ExpressionNode dv = differentiate(v);
+        return switch (binary.getOperator()) {
+            case ADD -> add(du, dv);
+            case SUBTRACT -> subtract(du, dv);
+            // (uv)' = u'v + uv'
+            case MULTIPLY -> add(multiply(du, v), multiply(u, dv));
+            // (u/v)' = (u'v - uv') / v²
+            case DIVIDE -> isZero(dv)
+                    ? divide(du, v)
+                    : divide(subtract(multiply(du, v), multiply(u, dv)), multiply(v, v));
+            case POWER -> {
+                if (v instanceof ExpressionNode.Constant c) {
+                    // (u^c)' = c u^(c-1) u'
+                    ExpressionNode power = binary(ExpressionNode.Operator.POWER, u, constant(c.getValue() - 1.0));
+                    yield multiply(multiply(c, power), du);
+                }
+                // (u^v)' = u^v (v' ln u + v u'/u)
+                ExpressionNode logU = new ExpressionNode.Call(ExpressionNode.Function.LOG, u);
+                yield multiply(binary, add(multiply(dv, logU), divide(multiply(v, du), u)));
+            }
+        };
+    }
+
+    /**
+     * Dérive une fonction usuelle par la règle de la chaîne
+     */
+    private static ExpressionNode differentiateCall(ExpressionNode.Call call) {
+        ExpressionNode u = call.getArgument();
+        ExpressionNode du = differentiate(u);
+        if (isZero(du))
+            return constant(0.0);
+        return switch (call.getFunction()) {
+            case SIN -> multiply(new ExpressionNode.Call(ExpressionNode.Function.COS, u), du);
+            case COS -> negate(multiply(new ExpressionNode.Call(ExpressionNode.Function.SIN, u), du));
+            // tan' = 1 / cos²
+            case TAN -> {
+                ExpressionNode cos = new ExpressionNode.Call(ExpressionNode.Function.COS, u);
+                yield divide(du, multiply(cos, cos));
+            }
+            case LOG -> divide(du, u);
+            case EXP -> multiply(call, du);
+            case SQT -> divide(du, multiply(constant(2.0), call));
+        };
+    }
+
+    private static ExpressionNode constant(double value) {
+        return new ExpressionNode.Constant(value);
+    }
+
+    private static boolean isZero(ExpressionNode node) {
+        return node instanceof ExpressionNode.Constant c && c.getValue() == 0.0;
+    }
+
+    private static ExpressionNode binary(ExpressionNode.Operator operator, ExpressionNode left, ExpressionNode right) {
+        return new ExpressionNode.Binary(operator, left, right);
+    }
+
+    private static ExpressionNode negate(ExpressionNode node) {
+        return isZero(node) ? node : new ExpressionNode.Negate(node);
+    }
+
+    private static ExpressionNode add(ExpressionNode left, ExpressionNode right) {
+        if (isZero(left))
+            return right;
+        if (isZero(right))
+            return left;
+        return binary(ExpressionNode.Operator.ADD, left, right);
+    }
+
+    private static ExpressionNode subtract(ExpressionNode left, ExpressionNode right) {
+        if (isZero(right))
+            return left;
+        if (isZero(left))
+            return negate(right);
+        return binary(ExpressionNode.Operator.SUBTRACT, left, right);
+    }
+
+    /**
+     * Produit où un facteur dérivé nul annule le terme : ce zéro est exact, ce n'est pas 0 * u évalué
+     */
+    private static ExpressionNode multiply(ExpressionNode left, ExpressionNode right) {
+        if (isZero(left) || isZero(right))
+            return constant(0.0);
+        return binary(ExpressionNode.Operator.MULTIPLY, left, right);
+    }
+
+    private static ExpressionNode divide(ExpressionNode left, ExpressionNode right) {
+        if (isZero(left))
+            return constant(0.0);
+        return binary(ExpressionNode.Operator.DIVIDE, left, right);
+    }
+}
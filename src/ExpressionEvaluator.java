@@ -1,145 +1,175 @@
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Classe pour évaluer une fonction en un point
  */
 public class ExpressionEvaluator{
 
+    /**
+     * Moteurs d'évaluation disponibles pour les expressions compilées
+     */
+    public enum Backend {
+        /** Parcours de l'arbre syntaxique à chaque évaluation */
+        INTERPRETER,
+        /** Classe cachée générée à la compilation, retombe sur l'interpréteur en cas d'échec */
+        BYTECODE
+    }
+
+    /** Taille par défaut des caches partagés, largement au-dessus du nombre de fonctions saisies dans une session */
+    private static final int DEFAULT_CACHE_SIZE = 64;
+
+    private static final List<String> SINGLE_VARIABLE = List.of("x");
+
+    /** Un cache partagé par moteur, pour que tous les écrans réutilisent les mêmes expressions compilées */
+    private static final Map<Backend, ExpressionCache> SHARED_CACHES = new EnumMap<>(Backend.class);
+    static {
+        for (Backend b : Backend.values())
+            SHARED_CACHES.put(b, new ExpressionCache(DEFAULT_CACHE_SIZE));
+    }
 
-    public ExpressionEvaluator(){}
+    private final Backend backend;
+    private final ExpressionCache cache;
+
+    /**
+     * Construit un évaluateur avec le moteur choisi par la propriété système calculator.backend
+     * (interpreter par défaut)
+     */
+    public ExpressionEvaluator(){
+        this(defaultBackend());
+    }
+
+    /**
+     * Construit un évaluateur avec le moteur donné et le cache partagé de ce moteur
+     * @param backend moteur d'évaluation des expressions compilées
+     */
+    public ExpressionEvaluator(Backend backend){
+        this(backend, SHARED_CACHES.get(backend));
+    }
+
+    /**
+     * Construit un évaluateur avec son propre cache
+     * @param backend moteur d'évaluation des expressions compilées
+     * @param cache cache des expressions compilées, réservé à ce moteur
+     */
+    public ExpressionEvaluator(Backend backend, ExpressionCache cache){
+        this.backend = backend;
+        this.cache = cache;
+    }
 
     /**
      * Evalue la fonction en un point x
      * @param expr Expression littérale
      * @param x point x
-     * @return valeur de f en x
+     * @return valeur de f en x, NaN si l'expression est invalide
      */
     public double evaluate(String expr, double x) {
-        expr = expr.replaceAll(" ", "").replace("π", String.valueOf(Math.PI));
-
         try {
-            return parseExpression(expr, x);
-        } catch (Exception e) {
+            return compile(expr).evaluate(x);
+        } catch (ExpressionParseException e) {
             return Double.NaN;
         }
     }
-    
+
     /**
-     * Transforme l'expression littérale en expression mathématique
+     * Evalue la fonction sur tout un tableau de points
      * @param expr Expression littérale
-     * @param x point x
-     * @return valeur de f en x
+     * @param xs points x
+     * @param out tableau de sortie, rempli de NaN si l'expression est invalide
      */
-    private double parseExpression(String expr, double x) {
-        for (int i = expr.length() - 1; i >= 0; i--) {
-            if (expr.charAt(i) == '+' || expr.charAt(i) == '-') {
-                if (i > 0 && !isOperator(expr.charAt(i - 1)) && expr.charAt(i - 1) != '(') {
-                    String left = expr.substring(0, i);
-                    String right = expr.substring(i + 1);
-                    if (expr.charAt(i) == '+') {
-                        return parseExpression(left, x) + parseExpression(right, x);
-                    } else {
-                        return parseExpression(left, x) - parseExpression(right, x);
-                    }
-                }
-            }
+    public void evaluate(String expr, double[] xs, double[] out) {
+        try {
+            compile(expr).evaluate(xs, out);
+        } catch (ExpressionParseException e) {
+            Arrays.fill(out, 0, xs.length, Double.NaN);
         }
+    }
 
-        for (int i = expr.length() - 1; i >= 0; i--) {
-            if ((expr.charAt(i) == '*' || expr.charAt(i) == '÷' || expr.charAt(i) == '/') && !isInsideParentheses(expr, i)) {
-                if (i > 0 && !isOperator(expr.charAt(i - 1)) && expr.charAt(i - 1) != '(') {
-                    String left = expr.substring(0, i);
-                    String right = expr.substring(i + 1);
-                    if (expr.charAt(i) == '*') {
-                        return parseExpression(left, x) * parseExpression(right, x);
-                    } else {
-                        return parseExpression(left, x) / parseExpression(right, x);
-                    }
-                }
-            }
-        }
+    /**
+     * Analyse l'expression une seule fois pour pouvoir l'évaluer en autant de points que nécessaire.
+     * Les expressions déjà compilées sont reprises du cache.
+     * @param expr Expression littérale
+     * @return l'expression compilée
+     * @throws ExpressionParseException si l'expression est invalide, avec la position de l'erreur
+     */
+    public CompiledExpression compile(String expr) {
+        return cache.get(cacheKey(expr, SINGLE_VARIABLE), key -> compileUncached(expr, SINGLE_VARIABLE));
+    }
 
-        for (int i = expr.length() - 1; i >= 0; i--) {
-            if (expr.charAt(i) == '^') {
-                String left = expr.substring(0, i);
-                String right = expr.substring(i + 1);
-                return Math.pow(parseExpression(left, x), parseExpression(right, x));
-            }
-        }
-        if (expr.startsWith("sin(") || expr.startsWith("cos(") || expr.startsWith("tan(")
-            || expr.startsWith("log(") || expr.startsWith("exp(") || expr.startsWith("sqt(")) {
-
-            int openIndex = expr.indexOf('(');
-            int closeIndex = findMatchingParentheses(expr, openIndex);
-            if (closeIndex != -1) {
-                String func = expr.substring(0, openIndex);
-                String inner = expr.substring(openIndex + 1, closeIndex);
-                double innerValue = parseExpression(inner, x);
-
-                return switch (func) {
-                    case "sin" -> Math.sin(innerValue);
-                    case "cos" -> Math.cos(innerValue);
-                    case "tan" -> Math.tan(innerValue);
-                    case "log" -> Math.log(innerValue);
-                    case "exp" -> Math.exp(innerValue);
-                    case "sqt" -> Math.sqrt(innerValue); 
-                    default -> throw new IllegalArgumentException();
-                };
-                
-            }
-        }
+    /**
+     * Compile une expression de plusieurs variables, par exemple sin(x)*cos(y) ou t^2.
+     * Chaque variable est résolue en son indice dans la liste, qui est l'ordre attendu par
+     * {@link CompiledExpression#evaluate(double[])}.
+     * @param expr Expression littérale
+     * @param variables noms des variables ; x seul si aucun n'est donné
+     * @return l'expression compilée
+     * @throws ExpressionParseException si l'expression est invalide, avec la position de l'erreur
+     * @throws IllegalArgumentException si un nom de variable est invalide ou répété
+     */
+    public CompiledExpression compile(String expr, String... variables) {
+        if (variables.length == 0)
+            return compile(expr);
+        List<String> names = List.of(variables);
+        for (int i = 0; i < names.size(); i++)
+            checkVariableName(names.get(i), names.subList(0, i));
+        return cache.get(cacheKey(expr, names), key -> compileUncached(expr, names));
+    }
 
-        if (expr.startsWith("(") && expr.endsWith(")")) {
-            return parseExpression(expr.substring(1, expr.length() - 1), x);
-        }
+    /**
+     * Clé de cache d'une expression : ses variables puis son texte exact.
+     * Les noms de variables ne contiennent que des lettres, le premier '|' sépare donc toujours les deux parties.
+     */
+    private static String cacheKey(String expr, List<String> variables) {
+        return String.join(",", variables) + "|" + expr;
+    }
 
-        if (expr.equals("x")) {
-            return x;
-        }
+    /**
+     * Compile l'expression sans passer par le cache
+     * @param expr Expression littérale
+     * @param variables noms des variables
+     * @return l'expression compilée
+     */
+    private CompiledExpression compileUncached(String expr, List<String> variables) {
+        ExpressionNode root = ExpressionOptimizer.simplify(new ExpressionParser(expr, variables).parse());
+        return new CompiledExpression(expr, variables, root, backend);
+    }
 
-        return Double.parseDouble(expr);
+    /**
+     * Vérifie qu'un nom de variable est un identifiant reconnu par l'analyseur et qu'il n'est pas déjà pris
+     */
+    private static void checkVariableName(String name, List<String> previous) {
+        if (name.isEmpty() || !name.chars().allMatch(Character::isLetter))
+            throw new IllegalArgumentException("Nom de variable invalide '" + name + "'");
+        if (name.equals("π") || ExpressionNode.Function.fromName(name) != null)
+            throw new IllegalArgumentException("Nom de variable réservé '" + name + "'");
+        if (previous.contains(name))
+            throw new IllegalArgumentException("Variable répétée '" + name + "'");
     }
 
     /**
-     * Détermine si une expr est entre une paire de parenthèse
-     * @param expr Expression littérale
-     * @param index index de la parenthèse ouverte + 1
-     * @return true or false selon la position de l'expression
+     * Getter pour le cache des expressions compilées, pour consulter ses compteurs
+     * @return le cache utilisé par compile
      */
-    private boolean isInsideParentheses(String expr, int index) {
-        int depth = 0;
-        for (int i = 0; i < index; i++) {
-            if (expr.charAt(i) == '(') depth++;
-            if (expr.charAt(i) == ')') depth--;
-        }
-        return depth > 0;
+    public ExpressionCache getCache() {
+        return cache;
     }
 
     /**
-     * Trouve l'indice de la parenthèse fermée correspondant à la parenthèse ouverte
-     * @param expr Expression littérale
-     * @param openIndex indice de la parenthèse ouverte
-     * @return indice de la parenthèse fermée
+     * Getter pour le moteur d'évaluation
+     * @return le moteur utilisé par compile
      */
-    private int findMatchingParentheses(String expr, int openIndex) {
-        int count = 1;
-        for (int i = openIndex + 1; i < expr.length(); i++) {
-            if (expr.charAt(i) == '(')
-                count++;
-            if (expr.charAt(i) == ')') {
-                count--;
-                if (count == 0)
-                    return i;
-            }
-        }
-        return -1;
+    public Backend getBackend() {
+        return backend;
     }
 
     /**
-     * Trouve si le caractère est un opérateur 
-     * @param c caractère
-     * @return c est un opérateur ?
+     * Lit le moteur par défaut dans la propriété système calculator.backend
+     * @return le moteur par défaut
      */
-    private boolean isOperator(char c) {
-        return c == '+' || c == '-' || c == '*' || c == '÷' || c == '/' || c == '^';
+    private static Backend defaultBackend() {
+        String property = System.getProperty("calculator.backend", "interpreter");
+        return property.equalsIgnoreCase("bytecode") ? Backend.BYTECODE : Backend.INTERPRETER;
     }
-}
\ No newline at end of file
+}
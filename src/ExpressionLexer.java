@@ -0,0 +1,152 @@
+/**
+ * Découpe une expression littérale en lexèmes, en un seul passage et sans copie de sous-chaînes
+ */
+public class ExpressionLexer {
+
+    /**
+     * Types de lexèmes reconnus
+     */
+    public enum TokenType {
+        NUMBER, IDENTIFIER, PLUS, MINUS, STAR, SLASH, CARET, LEFT_PAREN, RIGHT_PAREN, END
+    }
+
+    private final String input;
+    private int cursor;
+
+    private TokenType type;
+    private int start;
+    private int end;
+    private double number;
+
+    /**
+     * Construit le lexer et lit le premier lexème
+     * @param input Expression littérale
+     */
+    public ExpressionLexer(String input) {
+        this.input = input;
+        this.cursor = 0;
+        next();
+    }
+
+    /**
+     * Avance jusqu'au lexème suivant
+     */
+    public void next() {
+        while (cursor < input.length() && Character.isWhitespace(input.charAt(cursor)))
+            cursor++;
+
+        start = cursor;
+        if (cursor >= input.length()) {
+            type = TokenType.END;
+            end = cursor;
+            return;
+        }
+
+        char c = input.charAt(cursor);
+        if (isDigit(c) || c == '.') {
+            readNumber();
+        } else if (Character.isLetter(c)) {
+            while (cursor < input.length() && Character.isLetter(input.charAt(cursor)))
+                cursor++;
+            type = TokenType.IDENTIFIER;
+        } else {
+            type = switch (c) {
+                case '+' -> TokenType.PLUS;
+                case '-' -> TokenType.MINUS;
+                case '*' -> TokenType.STAR;
+                case '/', '÷' -> TokenType.SLASH;
+                case '^' -> TokenType.CARET;
+                case '(' -> TokenType.LEFT_PAREN;
+                case ')' -> TokenType.RIGHT_PAREN;
+                default -> throw new ExpressionParseException("Caractère inattendu '" + c + "'", cursor);
+            };
+            cursor++;
+        }
+        end = cursor;
+    }
+
+    /**
+     * Lit un nombre décimal, avec un exposant éventuel (1.5e-3)
+     */
+    private void readNumber() {
+        boolean digits = false;
+        while (cursor < input.length() && isDigit(input.charAt(cursor))) {
+            cursor++;
+            digits = true;
+        }
+        if (cursor < input.length() && input.charAt(cursor) == '.') {
+            cursor++;
+            while (cursor < input.length() && isDigit(input.charAt(cursor))) {
+                cursor++;
+                digits = true;
+            }
+        }
+        if (!digits)
+            throw new ExpressionParseException("Nombre invalide", start);
+
+        // Un 'e' n'est un exposant que s'il est suivi de chiffres, sinon c'est le début d'un identifiant
+        if (cursor < input.length() && (input.charAt(cursor) == 'e' || input.charAt(cursor) == 'E')) {
+            int exponent = cursor + 1;
+            if (exponent < input.length() && (input.charAt(exponent) == '+' || input.charAt(exponent) == '-'))
+                exponent++;
+            if (exponent < input.length() && isDigit(input.charAt(exponent))) {
+                cursor = exponent;
+                while (cursor < input.length() && isDigit(input.charAt(cursor)))
+                    cursor++;
+            }
+        }
+        type = TokenType.NUMBER;
+        number = Double.parseDouble(input.substring(start, cursor));
+    }
+
+    /**
+     * Trouve si le caractère est un chiffre ASCII
+     * @param c caractère
+     * @return c est un chiffre ?
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Getter pour le type du lexème courant
+     * @return le type du lexème
+     */
+    public TokenType getType() {
+        return type;
+    }
+
+    /**
+     * Getter pour la position du lexème courant
+     * @return indice du premier caractère du lexème
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Getter pour la valeur du lexème courant s'il s'agit d'un nombre
+     * @return la valeur numérique
+     */
+    public double getNumber() {
+        return number;
+    }
+
+    /**
+     * Compare le lexème courant à un identifiant sans créer de sous-chaîne
+     * @param name identifiant attendu
+     * @return le lexème courant est cet identifiant ?
+     */
+    public boolean isIdentifier(String name) {
+        return type == TokenType.IDENTIFIER && end - start == name.length()
+                && input.regionMatches(start, name, 0, name.length());
+    }
+
+    /**
+     * Texte du lexème courant, utilisé pour les messages d'erreur
+     * @return le texte du lexème
+     */
+    public String getText() {
+        return input.substring(start, end);
+    }
+}
@@ -0,0 +1,694 @@
+import java.util.Arrays;
+
+/**
+ * Noeud de l'arbre syntaxique d'une expression compilée
+ */
+public abstract class ExpressionNode {
+
+    /**
+     * Evalue le noeud en un point x
+     * @param x valeur de la première variable (x)
+     * @param temps cadre d'évaluation : valeurs des autres variables à leur indice, puis valeurs des
+     *              sous-expressions communes (voir {@link Let}) ; au moins tempCount() cases
+     * @return valeur du noeud en x
+     */
+    public abstract double evaluate(double x, double[] temps);
+
+    /**
+     * Evalue le noeud colonne par colonne sur n points consécutifs.
+     * Chaque noeud applique son opération sur toute la colonne en une seule boucle,
+     * ce qui permet au JIT de vectoriser les opérations arithmétiques.
+     * @param xs points x
+     * @param xsOffset indice du premier point dans xs
+     * @param out tableau de sortie
+     * @param outOffset indice de la première valeur dans out
+     * @param n nombre de points
+     * @param scratch colonnes temporaires de n valeurs : les tempCount() premières contiennent les
+     *                sous-expressions communes, suivies d'au moins scratchColumns() colonnes libres
+     * @param depth première colonne temporaire libre
+     */
+    public abstract void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int n,
+            double[][] scratch, int depth);
+
+    /**
+     * Evalue le noeud et sa dérivée par rapport à x en une seule passe (différentiation automatique directe).
+     * Chaque valeur est un nombre dual stocké dans deux cases consécutives du tampon : valeur puis dérivée.
+     * @param x point x
+     * @param buffer tampon réutilisable, voir {@link CompiledExpression#dualBufferSize()}
+     * @param at indice où écrire la valeur, la dérivée est écrite en at + 1 ; les cases suivantes sont libres
+     * @param temps indice de la première case des sous-expressions communes (deux cases par sous-expression)
+     */
+    public abstract void evaluateDual(double x, double[] buffer, int at, int temps);
+
+    /**
+     * Calcule un intervalle qui contient toutes les valeurs du noeud pour x dans [lower, upper].
+     * Chaque intervalle est stocké dans deux cases consécutives du tampon : borne inférieure puis supérieure,
+     * [NaN, NaN] pour un intervalle vide (noeud non défini sur tout l'intervalle).
+     * @param lower borne inférieure de x
+     * @param upper borne supérieure de x
+     * @param buffer tampon réutilisable, voir {@link CompiledExpression#intervalBufferSize()}
+     * @param at indice où écrire la borne inférieure, la borne supérieure est écrite en at + 1
+     * @param temps indice de la première case des sous-expressions communes (deux cases par sous-expression)
+     */
+    public abstract void evaluateInterval(double lower, double upper, double[] buffer, int at, int temps);
+
+    /**
+     * Nombre de colonnes temporaires nécessaires à l'évaluation par colonnes
+     * @return nombre de colonnes temporaires
+     */
+    public int scratchColumns() {
+        return 0;
+    }
+
+    /**
+     * Taille du cadre d'évaluation nécessaire à ce sous-arbre : indices des variables lues
+     * et des sous-expressions communes mémorisées
+     * @return nombre de cases du cadre
+     */
+    public int tempCount() {
+        return 0;
+    }
+
+    /**
+     * Opérateurs binaires reconnus par le parseur
+     */
+    public enum Operator {
+        ADD, SUBTRACT, MULTIPLY, DIVIDE, POWER
+    }
+
+    /**
+     * Fonctions usuelles reconnues par le parseur
+     */
+    public enum Function {
+        SIN("sin"), COS("cos"), TAN("tan"), LOG("log"), EXP("exp"), SQT("sqt");
+
+        private final String name;
+
+        Function(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Retourne le nom de la fonction tel qu'il est saisi
+         * @return nom de la fonction
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Trouve la fonction correspondant à un nom
+         * @param name nom saisi
+         * @return la fonction, ou null si le nom est inconnu
+         */
+        public static Function fromName(String name) {
+            for (Function f : values()) {
+                if (f.name.equals(name))
+                    return f;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Constante numérique
+     */
+    public static final class Constant extends ExpressionNode {
+        private final double value;
+
+        public Constant(double value) {
+            this.value = value;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Constant c
+                    && Double.doubleToLongBits(c.value) == Double.doubleToLongBits(value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(value);
+        }
+
+        @Override
+        public double evaluate(double x, double[] temps) {
+            return value;
+        }
+
+        @Override
+        public void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int n,
+                double[][] scratch, int depth) {
+            Arrays.fill(out, outOffset, outOffset + n, value);
+        }
+
+        @Override
+        public void evaluateDual(double x, double[] buffer, int at, int temps) {
+            buffer[at] = value;
+            buffer[at + 1] = 0.0;
+        }
+
+        @Override
+        public void evaluateInterval(double lower, double upper, double[] buffer, int at, int temps) {
+            buffer[at] = value;
+            buffer[at + 1] = value;
+        }
+    }
+
+    /**
+     * Variable, résolue à la compilation en un indice du cadre d'évaluation.
+     * L'indice 0 est la première variable (x), passée directement en paramètre.
+     */
+    public static final class Variable extends ExpressionNode {
+        private final int slot;
+
+        public Variable(int slot) {
+            this.slot = slot;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Variable v && v.slot == slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * slot + 1;
+        }
+
+        @Override
+        public double evaluate(double x, double[] temps) {
+            return slot == 0 ? x : temps[slot];
+        }
+
+        @Override
+        public void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int n,
+                double[][] scratch, int depth) {
+            requireFirstVariable();
+            System.arraycopy(xs, xsOffset, out, outOffset, n);
+        }
+
+        @Override
+        public void evaluateDual(double x, double[] buffer, int at, int temps) {
+            requireFirstVariable();
+            buffer[at] = x;
+            buffer[at + 1] = 1.0;
+        }
+
+        @Override
+        public void evaluateInterval(double lower, double upper, double[] buffer, int at, int temps) {
+            requireFirstVariable();
+            buffer[at] = lower;
+            buffer[at + 1] = upper;
+        }
+
+        @Override
+        public int tempCount() {
+            return slot + 1;
+        }
+
+        /**
+         * Les évaluations par lots, duales et par intervalles ne portent que sur la première variable
+         */
+        private void requireFirstVariable() {
+            if (slot != 0)
+                throw new IllegalStateException("Evaluation limitée aux expressions d'une seule variable");
+        }
+    }
+
+    /**
+     * Opposé d'une sous-expression
+     */
+    public static final class Negate extends ExpressionNode {
+        private final ExpressionNode operand;
+
+        public Negate(ExpressionNode operand) {
+            this.operand = operand;
+        }
+
+        public ExpressionNode getOperand() {
+            return operand;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Negate n && n.operand.equals(operand);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * operand.hashCode() + 2;
+        }
+
+        @Override
+        public double evaluate(double x, double[] temps) {
+            return -operand.evaluate(x, temps);
+        }
+
+        @Override
+        public void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int n,
+                double[][] scratch, int depth) {
+            operand.evaluate(xs, xsOffset, out, outOffset, n, scratch, depth);
+            for (int i = outOffset; i < outOffset + n; i++)
+                out[i] = -out[i];
+        }
+
+        @Override
+        public void evaluateDual(double x, double[] buffer, int at, int temps) {
+            operand.evaluateDual(x, buffer, at, temps);
+            buffer[at] = -buffer[at];
+            buffer[at + 1] = -buffer[at + 1];
+        }
+
+        @Override
+        public void evaluateInterval(double lower, double upper, double[] buffer, int at, int temps) {
+            operand.evaluateInterval(lower, upper, buffer, at, temps);
+            double a = buffer[at];
+            buffer[at] = -buffer[at + 1];
+            buffer[at + 1] = -a;
+        }
+
+        @Override
+        public int scratchColumns() {
+            return operand.scratchColumns();
+        }
+
+        @Override
+        public int tempCount() {
+            return operand.tempCount();
+        }
+    }
+
+    /**
+     * Opération binaire entre deux sous-expressions
+     */
+    public static final class Binary extends ExpressionNode {
+        private final Operator operator;
+        private final ExpressionNode left;
+        private final ExpressionNode right;
+        private final int hash;
+
+        public Binary(Operator operator, ExpressionNode left, ExpressionNode right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.hash = (31 * (31 * operator.ordinal() + left.hashCode())) + right.hashCode();
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public ExpressionNode getLeft() {
+            return left;
+        }
+
+        public ExpressionNode getRight() {
+            return right;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Binary b && b.hash == hash && b.operator == operator
+                    && b.left.equals(left) && b.right.equals(right);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public double evaluate(double x, double[] temps) {
+            double a = left.evaluate(x, temps);
+            double b = right.evaluate(x, temps);
+            return switch (operator) {
+                case ADD -> a + b;
+                case SUBTRACT -> a - b;
+                case MULTIPLY -> a * b;
+                case DIVIDE -> a / b;
+                case POWER -> Math.pow(a, b);
+            };
+        }
+
+        @Override
+        public void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int n,
+                double[][] scratch, int depth) {
+            left.evaluate(xs, xsOffset, out, outOffset, n, scratch, depth);
+            double[] b = scratch[depth];
+            right.evaluate(xs, xsOffset, b, 0, n, scratch, depth + 1);
+            // Une boucle par opérateur pour que chacune soit vectorisable
+            switch (operator) {
+                case ADD -> {
+                    for (int i = 0; i < n; i++)
+                        out[outOffset + i] += b[i];
+                }
+                case SUBTRACT -> {
+                    for (int i = 0; i < n; i++)
+                        out[outOffset + i] -= b[i];
+                }
+                case MULTIPLY -> {
+                    for (int i = 0; i < n; i++)
+                        out[outOffset + i] *= b[i];
+                }
+                case DIVIDE -> {
+                    for (int i = 0; i < n; i++)
+                        out[outOffset + i] /= b[i];
+                }
+                case POWER -> {
+                    for (int i = 0; i < n; i++)
+                        out[outOffset + i] = Math.pow(out[outOffset + i], b[i]);
+                }
+            }
+        }
+
+        @Override
+        public void evaluateDual(double x, double[] buffer, int at, int temps) {
+            left.evaluateDual(x, buffer, at, temps);
+            right.evaluateDual(x, buffer, at + 2, temps);
+            double a = buffer[at];
+            double da = buffer[at + 1];
+            double b = buffer[at + 2];
+            double db = buffer[at + 3];
+            switch (operator) {
+                case ADD -> {
+                    buffer[at] = a + b;
+                    buffer[at + 1] = da + db;
+                }
+                case SUBTRACT -> {
+                    buffer[at] = a - b;
+                    buffer[at + 1] = da - db;
+                }
+                case MULTIPLY -> {
+                    buffer[at] = a * b;
+                    buffer[at + 1] = da * b + a * db;
+                }
+                case DIVIDE -> {
+                    double q = a / b;
+                    buffer[at] = q;
+                    buffer[at + 1] = (da - q * db) / b;
+                }
+                case POWER -> {
+                    double v = Math.pow(a, b);
+                    buffer[at] = v;
+                    if (db == 0.0) {
+                        // Exposant constant : pas de ln(a), qui vaudrait NaN pour une base négative
+                        buffer[at + 1] = da == 0.0 ? 0.0 : b * Math.pow(a, b - 1.0) * da;
+                    } else {
+                        buffer[at + 1] = v * (db * Math.log(a) + b * da / a);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void evaluateInterval(double lower, double upper, double[] buffer, int at, int temps) {
+            left.evaluateInterval(lower, upper, buffer, at, temps);
+            right.evaluateInterval(lower, upper, buffer, at + 2, temps);
+            double a = buffer[at];
+            double b = buffer[at + 1];
+            double c = buffer[at + 2];
+            double d = buffer[at + 3];
+            switch (operator) {
+                case ADD -> IntervalMath.add(buffer, at, a, b, c, d);
+                case SUBTRACT -> IntervalMath.subtract(buffer, at, a, b, c, d);
+                case MULTIPLY -> IntervalMath.multiply(buffer, at, a, b, c, d);
+                case DIVIDE -> IntervalMath.divide(buffer, at, a, b, c, d);
+                case POWER -> IntervalMath.power(buffer, at, a, b, c, d);
+            }
+        }
+
+        @Override
+        public int scratchColumns() {
+            return Math.max(left.scratchColumns(), 1 + right.scratchColumns());
+        }
+
+        @Override
+        public int tempCount() {
+            return Math.max(left.tempCount(), right.tempCount());
+        }
+    }
+
+    /**
+     * Application d'une fonction usuelle à une sous-expression
+     */
+    public static final class Call extends ExpressionNode {
+        private final Function function;
+        private final ExpressionNode argument;
+        private final int hash;
+
+        public Call(Function function, ExpressionNode argument) {
+            this.function = function;
+            this.argument = argument;
+            this.hash = 31 * function.ordinal() + argument.hashCode();
+        }
+
+        public Function getFunction() {
+            return function;
+        }
+
+        public ExpressionNode getArgument() {
+            return argument;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Call c && c.hash == hash && c.function == function && c.argument.equals(argument);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public double evaluate(double x, double[] temps) {
+            double v = argument.evaluate(x, temps);
+            return switch (function) {
+                case SIN -> Math.sin(v);
+                case COS -> Math.cos(v);
+                case TAN -> Math.tan(v);
+                case LOG -> Math.log(v);
+                case EXP -> Math.exp(v);
+                case SQT -> Math.sqrt(v);
+            };
+        }
+
+        @Override
+        public void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int n,
+                double[][] scratch, int depth) {
+            argument.evaluate(xs, xsOffset, out, outOffset, n, scratch, depth);
+            int end = outOffset + n;
+            switch (function) {
+                case SIN -> {
+                    for (int i = outOffset; i < end; i++)
+                        out[i] = Math.sin(out[i]);
+                }
+                case COS -> {
+                    for (int i = outOffset; i < end; i++)
+                        out[i] = Math.cos(out[i]);
+                }
+                case TAN -> {
+                    for (int i = outOffset; i < end; i++)
+                        out[i] = Math.tan(out[i]);
+                }
+                case LOG -> {
+                    for (int i = outOffset; i < end; i++)
+                        out[i] = Math.log(out[i]);
+                }
+                case EXP -> {
+                    for (int i = outOffset; i < end; i++)
+                        out[i] = Math.exp(out[i]);
+                }
+                case SQT -> {
+                    for (int i = outOffset; i < end; i++)
+                        out[i] = Math.sqrt(out[i]);
+                }
+            }
+        }
+
+        @Override
+        public void evaluateDual(double x, double[] buffer, int at, int temps) {
+            argument.evaluateDual(x, buffer, at, temps);
+            double a = buffer[at];
+            double da = buffer[at + 1];
+            switch (function) {
+                case SIN -> {
+                    buffer[at] = Math.sin(a);
+                    buffer[at + 1] = Math.cos(a) * da;
+                }
+                case COS -> {
+                    buffer[at] = Math.cos(a);
+                    buffer[at + 1] = -Math.sin(a) * da;
+                }
+                case TAN -> {
+                    double t = Math.tan(a);
+                    buffer[at] = t;
+                    buffer[at + 1] = (1.0 + t * t) * da;
+                }
+                case LOG -> {
+                    buffer[at] = Math.log(a);
+                    buffer[at + 1] = da / a;
+                }
+                case EXP -> {
+                    double e = Math.exp(a);
+                    buffer[at] = e;
+                    buffer[at + 1] = e * da;
+                }
+                case SQT -> {
+                    double r = Math.sqrt(a);
+                    buffer[at] = r;
+                    buffer[at + 1] = da / (2.0 * r);
+                }
+            }
+        }
+
+        @Override
+        public void evaluateInterval(double lower, double upper, double[] buffer, int at, int temps) {
+            argument.evaluateInterval(lower, upper, buffer, at, temps);
+            double a = buffer[at];
+            double b = buffer[at + 1];
+            switch (function) {
+                case SIN -> IntervalMath.sin(buffer, at, a, b);
+                case COS -> IntervalMath.cos(buffer, at, a, b);
+                case TAN -> IntervalMath.tan(buffer, at, a, b);
+                case LOG -> IntervalMath.log(buffer, at, a, b);
+                case EXP -> IntervalMath.exp(buffer, at, a, b);
+                case SQT -> IntervalMath.sqrt(buffer, at, a, b);
+            }
+        }
+
+        @Override
+        public int scratchColumns() {
+            return argument.scratchColumns();
+        }
+
+        @Override
+        public int tempCount() {
+            return argument.tempCount();
+        }
+    }
+
+    /**
+     * Mémorise la valeur d'une sous-expression commune dans une case temporaire, puis évalue le corps
+     * qui peut la relire autant de fois que nécessaire avec {@link Ref}
+     */
+    public static final class Let extends ExpressionNode {
+        private final int slot;
+        private final ExpressionNode value;
+        private final ExpressionNode body;
+
+        public Let(int slot, ExpressionNode value, ExpressionNode body) {
+            this.slot = slot;
+            this.value = value;
+            this.body = body;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        public ExpressionNode getValue() {
+            return value;
+        }
+
+        public ExpressionNode getBody() {
+            return body;
+        }
+
+        @Override
+        public double evaluate(double x, double[] temps) {
+            temps[slot] = value.evaluate(x, temps);
+            return body.evaluate(x, temps);
+        }
+
+        @Override
+        public void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int n,
+                double[][] scratch, int depth) {
+            value.evaluate(xs, xsOffset, scratch[slot], 0, n, scratch, depth);
+            body.evaluate(xs, xsOffset, out, outOffset, n, scratch, depth);
+        }
+
+        @Override
+        public void evaluateDual(double x, double[] buffer, int at, int temps) {
+            value.evaluateDual(x, buffer, at, temps);
+            buffer[temps + 2 * slot] = buffer[at];
+            buffer[temps + 2 * slot + 1] = buffer[at + 1];
+            body.evaluateDual(x, buffer, at, temps);
+        }
+
+        @Override
+        public void evaluateInterval(double lower, double upper, double[] buffer, int at, int temps) {
+            value.evaluateInterval(lower, upper, buffer, at, temps);
+            buffer[temps + 2 * slot] = buffer[at];
+            buffer[temps + 2 * slot + 1] = buffer[at + 1];
+            body.evaluateInterval(lower, upper, buffer, at, temps);
+        }
+
+        @Override
+        public int scratchColumns() {
+            return Math.max(value.scratchColumns(), body.scratchColumns());
+        }
+
+        @Override
+        public int tempCount() {
+            return Math.max(slot + 1, Math.max(value.tempCount(), body.tempCount()));
+        }
+    }
+
+    /**
+     * Relit la valeur d'une sous-expression commune mémorisée par {@link Let}
+     */
+    public static final class Ref extends ExpressionNode {
+        private final int slot;
+
+        public Ref(int slot) {
+            this.slot = slot;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        @Override
+        public double evaluate(double x, double[] temps) {
+            return temps[slot];
+        }
+
+        @Override
+        public void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int n,
+                double[][] scratch, int depth) {
+            System.arraycopy(scratch[slot], 0, out, outOffset, n);
+        }
+
+        @Override
+        public void evaluateDual(double x, double[] buffer, int at, int temps) {
+            buffer[at] = buffer[temps + 2 * slot];
+            buffer[at + 1] = buffer[temps + 2 * slot + 1];
+        }
+
+        @Override
+        public void evaluateInterval(double lower, double upper, double[] buffer, int at, int temps) {
+            buffer[at] = buffer[temps + 2 * slot];
+            buffer[at + 1] = buffer[temps + 2 * slot + 1];
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Ref r && r.slot == slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * slot + 3;
+        }
+    }
+}
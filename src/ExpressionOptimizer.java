@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Passe d'optimisation entre l'analyse et l'évaluation d'une expression :
+ * calcul des sous-expressions constantes, suppression des éléments neutres,
+ * remplacement des petites puissances entières par des produits et mise en commun des sous-expressions répétées
+ */
+public class ExpressionOptimizer {
+    /** Nombre maximal de sous-expressions mises en commun (les cases temporaires doivent tenir dans les variables locales du bytecode) */
+    private static final int MAX_TEMPS = 100;
+
+    private ExpressionOptimizer() {}
+
+    /**
+     * Simplifie l'arbre sans changer la valeur de l'expression.
+     * Les résultats sont identiques bit à bit, sauf x^3 remplacé par x*x*x (écart d'au plus un ulp)
+     * et x+0 remplacé par x (le signe d'un zéro négatif est conservé au lieu de devenir +0).
+     * @param node racine de l'arbre
+     * @return racine de l'arbre simplifié
+     */
+    public static ExpressionNode simplify(ExpressionNode node) {
+        if (node instanceof ExpressionNode.Negate negate) {
+            ExpressionNode operand = simplify(negate.getOperand());
+            if (operand instanceof ExpressionNode.Constant c)
+                return new ExpressionNode.Constant(-c.getValue());
+            if (operand instanceof ExpressionNode.Negate inner)
+                return inner.getOperand();
+            return new ExpressionNode.Negate(operand);
+        }
+        if (node instanceof ExpressionNode.Call call) {
+            ExpressionNode argument = simplify(call.getArgument());
+            ExpressionNode result = new ExpressionNode.Call(call.getFunction(), argument);
+            return argument instanceof ExpressionNode.Constant ? fold(result) : result;
+        }
+        if (node instanceof ExpressionNode.Binary binary) {
+            return simplifyBinary(binary.getOperator(), simplify(binary.getLeft()), simplify(binary.getRight()));
+        }
+        return node;
+    }
+
+    /**
+     * Simplifie une opération binaire dont les opérandes sont déjà simplifiés
+     */
+    private static ExpressionNode simplifyBinary(ExpressionNode.Operator operator, ExpressionNode left,
+            ExpressionNode right) {
+        ExpressionNode result = new ExpressionNode.Binary(operator, left, right);
+        if (left instanceof ExpressionNode.Constant && right instanceof ExpressionNode.Constant)
+            return fold(result);
+
+        switch (operator) {
+            case ADD -> {
+                if (isConstant(right, 0.0))
+                    return left;
+                if (isConstant(left, 0.0))
+                    return right;
+            }
+            case SUBTRACT -> {
+                // x-0 vaut x bit à bit, mais pas x-(-0) ni 0-x, qui donnent +0 pour x = -0 et x = +0
+                if (right instanceof ExpressionNode.Constant c && Double.doubleToRawLongBits(c.getValue()) == 0L)
+                    return left;
+            }
+            case MULTIPLY -> {
+                if (isConstant(right, 1.0))
+                    return left;
+                if (isConstant(left, 1.0))
+                    return right;
+            }
+            case DIVIDE -> {
+                if (isConstant(right, 1.0))
+                    return left;
+            }
+            case POWER -> {
+                // Math.pow(a, 1) == a et Math.pow(a, 0) == 1 pour tout a, y compris NaN
+                if (isConstant(right, 1.0))
+                    return left;
+                if (isConstant(right, 0.0))
+                    return new ExpressionNode.Constant(1.0);
+                if (isConstant(right, 2.0))
+                    return new ExpressionNode.Binary(ExpressionNode.Operator.MULTIPLY, left, left);
+                if (isConstant(right, 3.0))
+                    return new ExpressionNode.Binary(ExpressionNode.Operator.MULTIPLY,
+                            new ExpressionNode.Binary(ExpressionNode.Operator.MULTIPLY, left, left), left);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remplace un sous-arbre constant par sa valeur
+     */
+    private static ExpressionNode fold(ExpressionNode node) {
+        return new ExpressionNode.Constant(node.evaluate(0.0, new double[0]));
+    }
+
+    private static boolean isConstant(ExpressionNode node, double value) {
+        return node instanceof ExpressionNode.Constant c && c.getValue() == value;
+    }
+
+    /**
+     * Calcule une seule fois les sous-expressions qui apparaissent plusieurs fois dans l'arbre.
+     * Chacune est évaluée en tête par un {@link ExpressionNode.Let} puis relue par un {@link ExpressionNode.Ref}.
+     * @param root racine de l'arbre simplifié
+     * @param firstSlot première case libre du cadre d'évaluation, après celles des variables
+     * @return racine de l'arbre à évaluer
+     */
+    public static ExpressionNode eliminateCommonSubexpressions(ExpressionNode root, int firstSlot) {
+        Map<ExpressionNode, Integer> occurrences = new HashMap<>();
+        countOccurrences(root, occurrences);
+
+        Map<ExpressionNode, Integer> slots = new HashMap<>();
+        List<ExpressionNode> definitions = new ArrayList<>();
+        ExpressionNode body = rewrite(root, occurrences, slots, definitions, firstSlot);
+
+        // Les définitions sont dans l'ordre postfixe : chacune ne dépend que des précédentes
+        for (int i = definitions.size() - 1; i >= 0; i--)
+            body = new ExpressionNode.Let(firstSlot + i, definitions.get(i), body);
+        return body;
+    }
+
+    /**
+     * Compte les apparitions de chaque sous-arbre. Un sous-arbre déjà rencontré n'est pas parcouru à nouveau,
+     * pour que ses propres sous-arbres ne soient pas comptés en double.
+     */
+    private static void countOccurrences(ExpressionNode node, Map<ExpressionNode, Integer> occurrences) {
+        if (!isWorthSharing(node))
+            return;
+        if (occurrences.merge(node, 1, Integer::sum) > 1)
+            return;
+        if (node instanceof ExpressionNode.Negate negate) {
+            countOccurrences(negate.getOperand(), occurrences);
+        } else if (node instanceof ExpressionNode.Call call) {
+            countOccurrences(call.getArgument(), occurrences);
+        } else if (node instanceof ExpressionNode.Binary binary) {
+            countOccurrences(binary.getLeft(), occurrences);
+            countOccurrences(binary.getRight(), occurrences);
+        }
+    }
+
+    /**
+     * Reconstruit l'arbre en remplaçant les sous-arbres répétés par des lectures de cases temporaires
+     */
+    private static ExpressionNode rewrite(ExpressionNode node, Map<ExpressionNode, Integer> occurrences,
+            Map<ExpressionNode, Integer> slots, List<ExpressionNode> definitions, int firstSlot) {
+        if (!isWorthSharing(node))
+            return node;
+        Integer slot = slots.get(node);
+        if (slot != null)
+            return new ExpressionNode.Ref(slot);
+
+        ExpressionNode rebuilt;
+        if (node instanceof ExpressionNode.Negate negate) {
+            rebuilt = new ExpressionNode.Negate(
+                    rewrite(negate.getOperand(), occurrences, slots, definitions, firstSlot));
+        } else if (node instanceof ExpressionNode.Call call) {
+            rebuilt = new ExpressionNode.Call(call.getFunction(),
+                    rewrite(call.getArgument(), occurrences, slots, definitions, firstSlot));
+        } else {
+            ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+            rebuilt = new ExpressionNode.Binary(binary.getOperator(),
+                    rewrite(binary.getLeft(), occurrences, slots, definitions, firstSlot),
+                    rewrite(binary.getRight(), occurrences, slots, definitions, firstSlot));
+        }
+
+        if (occurrences.getOrDefault(node, 0) > 1 && definitions.size() < MAX_TEMPS) {
+            int newSlot = firstSlot + definitions.size();
+            definitions.add(rebuilt);
+            slots.put(node, newSlot);
+            return new ExpressionNode.Ref(newSlot);
+        }
+        return rebuilt;
+    }
+
+    /**
+     * Seules les opérations valent la peine d'être mises en commun, pas les feuilles
+     */
+    private static boolean isWorthSharing(ExpressionNode node) {
+        return node instanceof ExpressionNode.Binary || node instanceof ExpressionNode.Call
+                || node instanceof ExpressionNode.Negate;
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Exception levée lorsqu'une expression littérale ne peut pas être analysée
+ */
+public class ExpressionParseException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final int position;
+
+    /**
+     * Construit l'exception
+     * @param message description de l'erreur
+     * @param position indice du caractère fautif dans l'expression
+     */
+    public ExpressionParseException(String message, int position) {
+        super(message + " (position " + position + ")");
+        this.position = position;
+    }
+
+    /**
+     * Getter pour la position de l'erreur
+     * @return indice du caractère fautif dans l'expression
+     */
+    public int getPosition() {
+        return position;
+    }
+}
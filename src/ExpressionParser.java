@@ -0,0 +1,172 @@
+import java.util.List;
+
+/**
+ * Analyseur syntaxique par précédence d'opérateurs (Pratt) qui construit l'arbre d'une expression en temps linéaire
+ */
+public class ExpressionParser {
+    private static final int ADDITIVE = 10;
+    private static final int MULTIPLICATIVE = 20;
+    private static final int UNARY = 25;
+    private static final int POWER = 30;
+
+    private final ExpressionLexer lexer;
+    private final List<String> variables;
+
+    /**
+     * Construit l'analyseur d'une expression de la seule variable x
+     * @param input Expression littérale
+     */
+    public ExpressionParser(String input) {
+        this(input, List.of("x"));
+    }
+
+    /**
+     * Construit l'analyseur d'une expression de plusieurs variables
+     * @param input Expression littérale
+     * @param variables noms des variables ; chacune est résolue en son indice dans cette liste
+     */
+    public ExpressionParser(String input, List<String> variables) {
+        this.lexer = new ExpressionLexer(input);
+        this.variables = variables;
+    }
+
+    /**
+     * Analyse l'expression complète
+     * @return racine de l'arbre de l'expression
+     * @throws ExpressionParseException si l'expression est invalide
+     */
+    public ExpressionNode parse() {
+        ExpressionNode root = parseExpression(0);
+        if (lexer.getType() != ExpressionLexer.TokenType.END)
+            throw new ExpressionParseException("Symbole inattendu '" + lexer.getText() + "'", lexer.getStart());
+        return root;
+    }
+
+    /**
+     * Analyse une sous-expression dont les opérateurs lient plus fort que minPower
+     * @param minPower puissance de liaison minimale
+     * @return racine de la sous-expression
+     */
+    private ExpressionNode parseExpression(int minPower) {
+        ExpressionNode left = parsePrefix();
+        while (true) {
+            ExpressionNode.Operator operator = infixOperator(lexer.getType());
+            if (operator == null)
+                return left;
+            int power = bindingPower(operator);
+            if (power <= minPower)
+                return left;
+            lexer.next();
+            // '^' est associatif à droite : 2^3^2 = 2^(3^2)
+            ExpressionNode right = parseExpression(operator == ExpressionNode.Operator.POWER ? power - 1 : power);
+            left = new ExpressionNode.Binary(operator, left, right);
+        }
+    }
+
+    /**
+     * Analyse un terme : nombre, variable, constante, appel de fonction, parenthèses ou signe
+     * @return racine du terme
+     */
+    private ExpressionNode parsePrefix() {
+        int position = lexer.getStart();
+        switch (lexer.getType()) {
+            case NUMBER -> {
+                double value = lexer.getNumber();
+                lexer.next();
+                return new ExpressionNode.Constant(value);
+            }
+            case MINUS -> {
+                lexer.next();
+                return new ExpressionNode.Negate(parseExpression(UNARY));
+            }
+            case PLUS -> {
+                lexer.next();
+                return parseExpression(UNARY);
+            }
+            case LEFT_PAREN -> {
+                lexer.next();
+                ExpressionNode inner = parseExpression(0);
+                expect(ExpressionLexer.TokenType.RIGHT_PAREN, position);
+                return inner;
+            }
+            case IDENTIFIER -> {
+                return parseIdentifier();
+            }
+            case END -> throw new ExpressionParseException("Expression incomplète", position);
+            default -> throw new ExpressionParseException("Symbole inattendu '" + lexer.getText() + "'", position);
+        }
+    }
+
+    /**
+     * Analyse un identifiant : une variable, la constante π ou un appel de fonction
+     * @return noeud correspondant
+     */
+    private ExpressionNode parseIdentifier() {
+        int position = lexer.getStart();
+        for (int slot = 0; slot < variables.size(); slot++) {
+            if (lexer.isIdentifier(variables.get(slot))) {
+                lexer.next();
+                return new ExpressionNode.Variable(slot);
+            }
+        }
+        if (lexer.isIdentifier("π")) {
+            lexer.next();
+            return new ExpressionNode.Constant(Math.PI);
+        }
+
+        String name = lexer.getText();
+        ExpressionNode.Function function = ExpressionNode.Function.fromName(name);
+        if (function == null)
+            throw new ExpressionParseException("Identifiant inconnu '" + name + "'", position);
+        lexer.next();
+        int open = lexer.getStart();
+        expect(ExpressionLexer.TokenType.LEFT_PAREN, open);
+        ExpressionNode argument = parseExpression(0);
+        expect(ExpressionLexer.TokenType.RIGHT_PAREN, open);
+        return new ExpressionNode.Call(function, argument);
+    }
+
+    /**
+     * Consomme le lexème attendu ou lève une erreur
+     * @param type type attendu
+     * @param opening position de la parenthèse ouvrante associée, pour le message d'erreur
+     */
+    private void expect(ExpressionLexer.TokenType type, int opening) {
+        if (lexer.getType() != type) {
+            String message = type == ExpressionLexer.TokenType.RIGHT_PAREN
+                    ? "Parenthèse ouverte en position " + opening + " non fermée"
+                    : "'(' attendu";
+            throw new ExpressionParseException(message, lexer.getStart());
+        }
+        lexer.next();
+    }
+
+    /**
+     * Associe un lexème à l'opérateur binaire correspondant
+     * @param type type du lexème
+     * @return l'opérateur, ou null si le lexème n'est pas un opérateur binaire
+     */
+    private static ExpressionNode.Operator infixOperator(ExpressionLexer.TokenType type) {
+        return switch (type) {
+            case PLUS -> ExpressionNode.Operator.ADD;
+            case MINUS -> ExpressionNode.Operator.SUBTRACT;
+            case STAR -> ExpressionNode.Operator.MULTIPLY;
+            case SLASH -> ExpressionNode.Operator.DIVIDE;
+            case CARET -> ExpressionNode.Operator.POWER;
+            default -> null;
+        };
+    }
+
+    /**
+     * Puissance de liaison d'un opérateur binaire
+     * @param operator opérateur
+     * @return puissance de liaison
+     */
+    private static int bindingPower(ExpressionNode.Operator operator) {
+        return switch (operator) {
+            case ADD, SUBTRACT -> ADDITIVE;
+            case MULTIPLY, DIVIDE -> MULTIPLICATIVE;
+            case POWER -> POWER;
+        };
+    }
+}
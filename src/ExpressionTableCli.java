@@ -0,0 +1,237 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Point d'entrée sans interface graphique pour tabuler une expression :
+ * <pre>
+ * java ExpressionTableCli [--format csv|binary] [--output fichier] expression [xmin xmax pas]
+ * </pre>
+ * Sans intervalle, les points x sont lus sur l'entrée standard, séparés par des blancs.
+ * Le format csv écrit une ligne "x,f(x)" par point ; le format binary écrit les seules valeurs f(x),
+ * en doubles little-endian consécutifs comme {@link Tabulator}.
+ * Les points sont évalués par blocs et écrits à travers un tampon NIO direct.
+ */
+public class ExpressionTableCli {
+    /** Nombre de points évalués à la fois */
+    private static final int BATCH_SIZE = 4096;
+    /** Taille du tampon de sortie, vidé dès qu'un bloc risque de ne plus y tenir */
+    private static final int BUFFER_SIZE = 1 << 20;
+    /** Taille maximale d'une ligne csv : deux doubles, une virgule et un saut de ligne */
+    private static final int MAX_LINE_LENGTH = 2 * 25 + 2;
+
+    private static final String USAGE =
+            "Usage : java ExpressionTableCli [--format csv|binary] [--output fichier] expression [xmin xmax pas]";
+
+    private final CompiledExpression function;
+    private final boolean binary;
+    private final WritableByteChannel out;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final double[] xs = new double[BATCH_SIZE];
+    private final double[] ys = new double[BATCH_SIZE];
+    private final StringBuilder line = new StringBuilder(MAX_LINE_LENGTH);
+
+    /**
+     * Construit un tabulateur vers un canal de sortie
+     * @param function expression compilée
+     * @param binary true pour des doubles binaires, false pour du csv
+     * @param out canal de sortie
+     */
+    public ExpressionTableCli(CompiledExpression function, boolean binary, WritableByteChannel out) {
+        this.function = function;
+        this.binary = binary;
+        this.out = out;
+    }
+
+    /**
+     * Lance la tabulation ; le code de retour vaut 1 si l'expression est invalide et 2 si les arguments le sont
+     * @param args arguments de la ligne de commande
+     */
+    public static void main(String[] args) {
+        String format = "csv";
+        String output = null;
+        int i = 0;
+        while (i < args.length && args[i].startsWith("--")) {
+            if (i + 1 >= args.length)
+                usage("Valeur manquante pour " + args[i]);
+            switch (args[i]) {
+                case "--format" -> format = args[i + 1];
+                case "--output" -> output = args[i + 1];
+                default -> usage("Option inconnue " + args[i]);
+            }
+            i += 2;
+        }
+        int remaining = args.length - i;
+        if (remaining != 1 && remaining != 4)
+            usage(null);
+        if (!format.equals("csv") && !format.equals("binary"))
+            usage("Format inconnu " + format);
+
+        CompiledExpression function;
+        try {
+            function = new ExpressionEvaluator().compile(args[i]);
+        } catch (ExpressionParseException e) {
+            System.err.println("Expression invalide : " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        double xmin = 0;
+        double xmax = 0;
+        double step = 0;
+        if (remaining == 4) {
+            try {
+                xmin = Double.parseDouble(args[i + 1]);
+                xmax = Double.parseDouble(args[i + 2]);
+                step = Double.parseDouble(args[i + 3]);
+            } catch (NumberFormatException e) {
+                usage("Intervalle invalide : " + e.getMessage());
+            }
+            if (!Double.isFinite(xmin) || !Double.isFinite(xmax) || !Double.isFinite(step))
+                usage("Les bornes et le pas doivent être finis");
+            if (!(step > 0) || !(xmax >= xmin))
+                usage("Il faut xmin <= xmax et un pas strictement positif");
+            if (pointCount(xmin, xmax, step) < 0)
+                usage("Trop de points entre " + xmin + " et " + xmax + " avec un pas de " + step);
+        }
+
+        try (WritableByteChannel channel = output == null ? Channels.newChannel(System.out)
+                : FileChannel.open(Path.of(output), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            ExpressionTableCli table = new ExpressionTableCli(function, format.equals("binary"), channel);
+            if (remaining == 4)
+                table.tabulate(xmin, xmax, step);
+            else
+                table.tabulate(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+        } catch (NumberFormatException e) {
+            System.err.println("Point x invalide : " + e.getMessage());
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Erreur d'écriture : " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Tabule l'expression de xmin à xmax inclus avec un pas donné
+     * @param xmin premier point
+     * @param xmax borne supérieure des points
+     * @param step pas entre deux points
+     * @throws IOException si l'écriture échoue
+     * @throws IllegalArgumentException si l'intervalle ou le pas est invalide, ou si le nombre de points
+     * ne tient pas dans un long
+     */
+    public void tabulate(double xmin, double xmax, double step) throws IOException {
+        long n = pointCount(xmin, xmax, step);
+        if (n < 0)
+            throw new IllegalArgumentException("Intervalle [" + xmin + ", " + xmax + "] ou pas " + step + " invalide");
+        for (long done = 0; done < n; done += BATCH_SIZE) {
+            int length = (int) Math.min(BATCH_SIZE, n - done);
+            for (int k = 0; k < length; k++)
+                xs[k] = xmin + (done + k) * step;
+            writeBatch(length);
+        }
+        flush();
+    }
+
+    /**
+     * Tabule l'expression aux points lus, séparés par des blancs
+     * @param in source des points x
+     * @throws IOException si la lecture ou l'écriture échoue
+     * @throws NumberFormatException si un point n'est pas un nombre
+     */
+    public void tabulate(BufferedReader in) throws IOException {
+        int length = 0;
+        String text;
+        while ((text = in.readLine()) != null) {
+            for (String token : text.trim().split("\\s+")) {
+                if (token.isEmpty())
+                    continue;
+                xs[length++] = Double.parseDouble(token);
+                if (length == BATCH_SIZE) {
+                    writeBatch(length);
+                    length = 0;
+                }
+            }
+        }
+        writeBatch(length);
+        flush();
+    }
+
+    /**
+     * Nombre de points de xmin à xmax inclus avec un pas donné
+     * @param xmin premier point
+     * @param xmax borne supérieure des points
+     * @param step pas entre deux points
+     * @return nombre de points, ou -1 si les bornes ou le pas ne sont pas finis, si xmax &lt; xmin,
+     * si le pas n'est pas strictement positif ou si le nombre de points ne tient pas dans un long
+     */
+    public static long pointCount(double xmin, double xmax, double step) {
+        if (!Double.isFinite(xmin) || !Double.isFinite(xmax) || !Double.isFinite(step) || !(step > 0)
+                || !(xmax >= xmin))
+            return -1;
+        // Marge relative pour que xmax soit inclus malgré les arrondis de (xmax - xmin) / pas
+        double intervals = Math.floor((xmax - xmin) / step * (1 + 1e-12));
+        // Long.MAX_VALUE n'est pas représentable exactement : 2^63 est la première valeur qui déborde
+        if (!(intervals < 0x1p63 - 1024))
+            return -1;
+        return (long) intervals + 1;
+    }
+
+    /**
+     * Evalue les length premiers points de xs et écrit les résultats dans le tampon
+     */
+    private void writeBatch(int length) throws IOException {
+        function.evaluate(xs, 0, ys, 0, length);
+        int needed = binary ? length * Double.BYTES : length * MAX_LINE_LENGTH;
+        if (buffer.remaining() < needed)
+            drain();
+        if (binary) {
+            buffer.asDoubleBuffer().put(ys, 0, length);
+            buffer.position(buffer.position() + length * Double.BYTES);
+            return;
+        }
+        for (int k = 0; k < length; k++) {
+            line.setLength(0);
+            line.append(xs[k]).append(',').append(ys[k]).append('\n');
+            for (int c = 0; c < line.length(); c++)
+                buffer.put((byte) line.charAt(c));
+        }
+    }
+
+    /**
+     * Ecrit le contenu du tampon dans le canal
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            out.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Ecrit tout ce qui reste dans le tampon
+     * @throws IOException si l'écriture échoue
+     */
+    public void flush() throws IOException {
+        drain();
+    }
+
+    /**
+     * Affiche l'usage et termine le programme avec le code 2
+     */
+    private static void usage(String message) {
+        if (message != null)
+            System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
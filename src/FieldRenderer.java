@@ -0,0 +1,393 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Rendu d'une expression des deux variables x et y sur une grille de pixels :
+ * courbe implicite f(x, y) = 0 par marching squares, ou carte de chaleur des valeurs de f.
+ * Dans chaque pixel traversé, la courbe est approchée par un segment dont les extrémités sont interpolées
+ * sur les bords du pixel ; l'opacité du pixel décroît avec sa distance au segment.
+ * Un changement de signe dû à un pôle, où f grandit au lieu de s'annuler, n'est pas tracé.
+ * L'image est découpée en tuiles calculées en parallèle sur un ForkJoinPool.
+ * Les pixels sont au format ARGB prémultiplié, ligne par ligne depuis le haut, comme attendu par un PixelBuffer.
+ */
+public class FieldRenderer {
+    /** Côté d'une tuile en pixels */
+    private static final int TILE_SIZE = 64;
+    /** Nombre de dichotomies pour encadrer un changement de signe sur le bord d'un pixel */
+    private static final int BISECTION_STEPS = 10;
+
+    /** Points de la palette des cartes de chaleur, des plus petites valeurs aux plus grandes */
+    private static final int[] PALETTE = { 0xFF30123B, 0xFF4686FB, 0xFF1AE4B6, 0xFFA2FC3C, 0xFFFABA39, 0xFFE4460A,
+            0xFF7A0403 };
+
+    /**
+     * Modes de rendu
+     */
+    public enum Mode {
+        /** Pixels traversés par la courbe f(x, y) = 0, le reste transparent */
+        IMPLICIT,
+        /** Couleur de chaque pixel selon la valeur de f en son centre */
+        HEATMAP
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Construit un moteur de rendu sur le pool commun
+     */
+    public FieldRenderer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construit un moteur de rendu sur un pool donné
+     * @param pool pool de threads utilisé pour le calcul
+     */
+    public FieldRenderer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Calcule l'image de f sur le rectangle [xmin, xmax] x [ymin, ymax]. L'appel bloque jusqu'à la fin du rendu.
+     * @param f expression compilée des variables x et y, dans cet ordre
+     * @param mode courbe implicite ou carte de chaleur
+     * @param xmin bord gauche
+     * @param xmax bord droit
+     * @param ymin bord bas
+     * @param ymax bord haut
+     * @param width largeur de l'image en pixels
+     * @param height hauteur de l'image en pixels
+     * @param color couleur ARGB de la courbe implicite, ignorée pour une carte de chaleur
+     * @param pixels tableau de sortie d'au moins width * height cases
+     * @param cancelled consulté entre deux tuiles, pour abandonner un rendu devenu inutile
+     * @throws CancellationException si le rendu a été abandonné
+     */
+    public void render(CompiledExpression f, Mode mode, double xmin, double xmax, double ymin, double ymax,
+            int width, int height, int color, int[] pixels, BooleanSupplier cancelled) {
+        if (f.getVariables().size() != 2)
+            throw new IllegalArgumentException("Expression des deux variables x et y attendue");
+        if (pixels.length < width * height)
+            throw new IndexOutOfBoundsException("Tableau trop court pour " + width + "x" + height + " pixels");
+
+        Field field = new Field(f, xmin, (xmax - xmin) / width, ymax, (ymax - ymin) / height, width, height, pixels,
+                cancelled);
+        field.color = color;
+        int tiles = field.columns * field.rows;
+        if (mode == Mode.IMPLICIT) {
+            pool.invoke(new TileTask(0, tiles, field::contour));
+            checkCancelled(cancelled);
+        } else {
+            // Premier passage : valeurs et bornes par tuile ; second passage : couleurs sur les bornes globales
+            field.values = new double[width * height];
+            field.minimums = new double[tiles];
+            field.maximums = new double[tiles];
+            pool.invoke(new TileTask(0, tiles, field::evaluate));
+            checkCancelled(cancelled);
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int tile = 0; tile < tiles; tile++) {
+                min = Math.min(min, field.minimums[tile]);
+                max = Math.max(max, field.maximums[tile]);
+            }
+            field.min = min;
+            field.scale = max > min ? (PALETTE.length - 1) / (max - min) : 0.0;
+            pool.invoke(new TileTask(0, tiles, field::colour));
+            checkCancelled(cancelled);
+        }
+    }
+
+    private static void checkCancelled(BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean())
+            throw new CancellationException("Rendu abandonné");
+    }
+
+    /**
+     * Couleur de la palette pour une position entre 0 et PALETTE.length - 1, par interpolation linéaire
+     */
+    private static int paletteColour(double position) {
+        int index = Math.min((int) position, PALETTE.length - 2);
+        double t = position - index;
+        int from = PALETTE[index];
+        int to = PALETTE[index + 1];
+        int r = (int) Math.round(((from >> 16) & 0xFF) * (1 - t) + ((to >> 16) & 0xFF) * t);
+        int g = (int) Math.round(((from >> 8) & 0xFF) * (1 - t) + ((to >> 8) & 0xFF) * t);
+        int b = (int) Math.round((from & 0xFF) * (1 - t) + (to & 0xFF) * t);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Traitement d'une tuile
+     */
+    private interface TileAction {
+        void apply(int tile);
+    }
+
+    /**
+     * Paramètres et résultats partagés par les tuiles d'un rendu
+     */
+    private static final class Field {
+        final CompiledExpression f;
+        final double xmin;
+        final double dx;
+        final double ymax;
+        final double dy;
+        final int width;
+        final int height;
+        final int columns;
+        final int rows;
+        final int[] pixels;
+        final BooleanSupplier cancelled;
+        int color;
+        double[] values;
+        double[] minimums;
+        double[] maximums;
+        double min;
+        double scale;
+
+        Field(CompiledExpression f, double xmin, double dx, double ymax, double dy, int width, int height,
+                int[] pixels, BooleanSupplier cancelled) {
+            this.f = f;
+            this.xmin = xmin;
+            this.dx = dx;
+            this.ymax = ymax;
+            this.dy = dy;
+            this.width = width;
+            this.height = height;
+            this.columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+            this.rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+            this.pixels = pixels;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Marching squares sur les pixels de la tuile : les coins de chaque pixel sont classés selon le signe de f,
+         * puis chaque bord où le signe change reçoit un point de passage, voir crossing.
+         * Les points d'un même pixel sont reliés deux à deux par des segments, et le pixel est coloré
+         * selon la distance de son centre au segment le plus proche.
+         */
+        void contour(int tile) {
+            if (cancelled.getAsBoolean())
+                return;
+            int left = (tile % columns) * TILE_SIZE;
+            int top = (tile / columns) * TILE_SIZE;
+            int w = Math.min(TILE_SIZE, width - left);
+            int h = Math.min(TILE_SIZE, height - top);
+
+            // Valeurs aux coins des pixels de la tuile, ligne par ligne
+            double[] env = new double[2];
+            double[] corners = new double[(w + 1) * (h + 1)];
+            for (int j = 0; j <= h; j++) {
+                env[1] = ymax - (top + j) * dy;
+                for (int i = 0; i <= w; i++) {
+                    env[0] = xmin + (left + i) * dx;
+                    corners[j * (w + 1) + i] = f.evaluate(env);
+                }
+            }
+
+            // Points de passage sur les bords haut, droit, bas et gauche, en coordonnées du pixel (y vers le bas)
+            double[] px = new double[4];
+            double[] py = new double[4];
+            for (int j = 0; j < h; j++) {
+                for (int i = 0; i < w; i++) {
+                    int at = j * (w + 1) + i;
+                    double topLeft = corners[at];
+                    double topRight = corners[at + 1];
+                    double bottomRight = corners[at + w + 2];
+                    double bottomLeft = corners[at + w + 1];
+                    int square = squareCase(topLeft, topRight, bottomRight, bottomLeft);
+                    int pixel = (top + j) * width + left + i;
+                    pixels[pixel] = 0;
+                    if (square <= 0 || square >= 15)
+                        continue;
+
+                    double x0 = xmin + (left + i) * dx;
+                    double y0 = ymax - (top + j) * dy;
+                    boolean crossings = crossing(topLeft, topRight, 0.0, 0.0, 1.0, 0.0, x0, y0, env, px, py, 0)
+                            & crossing(topRight, bottomRight, 1.0, 0.0, 0.0, 1.0, x0, y0, env, px, py, 1)
+                            & crossing(bottomLeft, bottomRight, 0.0, 1.0, 1.0, 0.0, x0, y0, env, px, py, 2)
+                            & crossing(topLeft, bottomLeft, 0.0, 0.0, 0.0, 1.0, x0, y0, env, px, py, 3);
+                    if (!crossings)
+                        continue;
+
+                    double distance;
+                    if (square == 5 || square == 10) {
+                        // Point selle : les quatre bords sont traversés, le signe au centre choisit les paires
+                        double centre = (topLeft + topRight + bottomRight + bottomLeft) / 4;
+                        if ((centre > 0) == (topLeft > 0))
+                            distance = Math.min(segmentDistance(px, py, 0, 1), segmentDistance(px, py, 2, 3));
+                        else
+                            distance = Math.min(segmentDistance(px, py, 0, 3), segmentDistance(px, py, 1, 2));
+                    } else {
+                        int first = -1;
+                        int second = -1;
+                        for (int edge = 0; edge < 4; edge++) {
+                            if (!Double.isNaN(px[edge])) {
+                                if (first < 0)
+                                    first = edge;
+                                else
+                                    second = edge;
+                            }
+                        }
+                        distance = segmentDistance(px, py, first, second);
+                    }
+                    pixels[pixel] = withCoverage(color, 1.0 - distance);
+                }
+            }
+        }
+
+        /**
+         * Point où f change de signe sur un bord du pixel, encadré par dichotomie puis interpolé linéairement
+         * dans l'encadrement final. Le point est écrit en (px[edge], py[edge]), ou NaN si le signe ne change pas
+         * le long du bord.
+         * @return false si f grandit au lieu de s'annuler en resserrant l'encadrement :
+         * le changement de signe est un pôle et non un zéro
+         */
+        boolean crossing(double from, double to, double fromX, double fromY, double alongX, double alongY,
+                double x0, double y0, double[] env, double[] px, double[] py, int edge) {
+            if ((from > 0) == (to > 0)) {
+                px[edge] = Double.NaN;
+                py[edge] = Double.NaN;
+                return true;
+            }
+            double lo = 0.0;
+            double hi = 1.0;
+            double fLo = from;
+            double fHi = to;
+            for (int step = 0; step < BISECTION_STEPS; step++) {
+                double mid = (lo + hi) / 2;
+                env[0] = x0 + (fromX + mid * alongX) * dx;
+                env[1] = y0 - (fromY + mid * alongY) * dy;
+                double value = f.evaluate(env);
+                if (Double.isNaN(value))
+                    return false;
+                if ((value > 0) == (fLo > 0)) {
+                    lo = mid;
+                    fLo = value;
+                } else {
+                    hi = mid;
+                    fHi = value;
+                }
+            }
+            // Près d'un zéro, f devient négligeable devant son saut le long du bord ; près d'un pôle, elle explose
+            if (!(Math.max(Math.abs(fLo), Math.abs(fHi)) <= 0.25 * (Math.abs(from) + Math.abs(to))))
+                return false;
+            double t = lo + (hi - lo) * fLo / (fLo - fHi);
+            px[edge] = fromX + t * alongX;
+            py[edge] = fromY + t * alongY;
+            return true;
+        }
+
+        /**
+         * Distance du centre du pixel au segment joignant deux points de passage, en pixels
+         */
+        static double segmentDistance(double[] px, double[] py, int a, int b) {
+            double ax = px[a];
+            double ay = py[a];
+            double vx = px[b] - ax;
+            double vy = py[b] - ay;
+            double length = vx * vx + vy * vy;
+            double t = length > 0 ? ((0.5 - ax) * vx + (0.5 - ay) * vy) / length : 0.0;
+            t = Math.max(0.0, Math.min(1.0, t));
+            return Math.hypot(ax + t * vx - 0.5, ay + t * vy - 0.5);
+        }
+
+        /**
+         * Couleur ARGB prémultipliée d'une couleur ARGB dont l'opacité est réduite à coverage, entre 0 et 1
+         */
+        static int withCoverage(int color, double coverage) {
+            double alpha = ((color >>> 24) & 0xFF) / 255.0 * Math.max(0.0, Math.min(1.0, coverage));
+            int a = (int) Math.round(255 * alpha);
+            int r = (int) Math.round(((color >> 16) & 0xFF) * alpha);
+            int g = (int) Math.round(((color >> 8) & 0xFF) * alpha);
+            int b = (int) Math.round((color & 0xFF) * alpha);
+            return (a << 24) | (r << 16) | (g << 8) | b;
+        }
+
+        /**
+         * Indice marching squares d'un pixel, un bit par coin du côté positif, ou -1 si un coin n'est pas défini
+         */
+        static int squareCase(double topLeft, double topRight, double bottomRight, double bottomLeft) {
+            if (!Double.isFinite(topLeft) || !Double.isFinite(topRight) || !Double.isFinite(bottomRight)
+                    || !Double.isFinite(bottomLeft))
+                return -1;
+            return (topLeft > 0 ? 8 : 0) | (topRight > 0 ? 4 : 0) | (bottomRight > 0 ? 2 : 0)
+                    | (bottomLeft > 0 ? 1 : 0);
+        }
+
+        /**
+         * Evalue f au centre des pixels de la tuile et en retient les bornes
+         */
+        void evaluate(int tile) {
+            if (cancelled.getAsBoolean())
+                return;
+            int left = (tile % columns) * TILE_SIZE;
+            int top = (tile / columns) * TILE_SIZE;
+            int right = Math.min(left + TILE_SIZE, width);
+            int bottom = Math.min(top + TILE_SIZE, height);
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double[] env = new double[2];
+            for (int j = top; j < bottom; j++) {
+                env[1] = ymax - (j + 0.5) * dy;
+                for (int i = left; i < right; i++) {
+                    env[0] = xmin + (i + 0.5) * dx;
+                    double value = f.evaluate(env);
+                    values[j * width + i] = value;
+                    if (Double.isFinite(value)) {
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+                }
+            }
+            minimums[tile] = min;
+            maximums[tile] = max;
+        }
+
+        /**
+         * Colore les pixels de la tuile selon leur valeur ; un pixel où f n'est pas définie reste transparent
+         */
+        void colour(int tile) {
+            if (cancelled.getAsBoolean())
+                return;
+            int left = (tile % columns) * TILE_SIZE;
+            int top = (tile / columns) * TILE_SIZE;
+            int right = Math.min(left + TILE_SIZE, width);
+            int bottom = Math.min(top + TILE_SIZE, height);
+            for (int j = top; j < bottom; j++) {
+                for (int i = left; i < right; i++) {
+                    double value = values[j * width + i];
+                    pixels[j * width + i] = Double.isFinite(value) ? paletteColour((value - min) * scale) : 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Traite les tuiles [start, end[ en se redécoupant jusqu'à une tuile par tâche
+     */
+    private static class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final TileAction action;
+
+        TileTask(int start, int end, TileAction action) {
+            this.start = start;
+            this.end = end;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new TileTask(start, middle, action), new TileTask(middle, end, action));
+            } else if (start < end) {
+                action.apply(start);
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * Opérations de l'arithmétique d'intervalles utilisées par {@link ExpressionNode#evaluateInterval}.
+ * Chaque résultat est écrit dans deux cases consécutives d'un tampon : borne inférieure puis borne supérieure.
+ * Les bornes sont arrondies vers l'extérieur pour que l'intervalle obtenu contienne toujours le résultat exact.
+ * L'intervalle vide (hors du domaine de définition) est représenté par [NaN, NaN].
+ */
+public final class IntervalMath {
+    private static final double TWO_PI = 2 * Math.PI;
+    /** Marge des tests d'appartenance d'un extremum ou d'une asymptote, pour absorber l'erreur sur kπ */
+    private static final double TOLERANCE = 1e-9;
+
+    private IntervalMath() {}
+
+    /**
+     * Ecrit un intervalle dans le tampon, vide si l'une des bornes est NaN
+     */
+    static void set(double[] buffer, int at, double lower, double upper) {
+        if (Double.isNaN(lower) || Double.isNaN(upper)) {
+            lower = Double.NaN;
+            upper = Double.NaN;
+        }
+        buffer[at] = lower;
+        buffer[at + 1] = upper;
+    }
+
+    /**
+     * Indique si l'intervalle est vide
+     */
+    static boolean isEmpty(double lower, double upper) {
+        return Double.isNaN(lower) || Double.isNaN(upper);
+    }
+
+    /**
+     * Arrondi vers le bas d'un résultat inexact (les fonctions de Math sont exactes à un ulp près)
+     */
+    static double down(double value) {
+        return value == Double.NEGATIVE_INFINITY ? value : Math.nextDown(value);
+    }
+
+    /**
+     * Arrondi vers le haut d'un résultat inexact
+     */
+    static double up(double value) {
+        return value == Double.POSITIVE_INFINITY ? value : Math.nextUp(value);
+    }
+
+    static void add(double[] buffer, int at, double a, double b, double c, double d) {
+        if (isEmpty(a, b) || isEmpty(c, d)) {
+            set(buffer, at, Double.NaN, Double.NaN);
+            return;
+        }
+        set(buffer, at, lowerBound(a + c), upperBound(b + d));
+    }
+
+    static void subtract(double[] buffer, int at, double a, double b, double c, double d) {
+        if (isEmpty(a, b) || isEmpty(c, d)) {
+            set(buffer, at, Double.NaN, Double.NaN);
+            return;
+        }
+        set(buffer, at, lowerBound(a - d), upperBound(b - c));
+    }
+
+    /**
+     * Borne inférieure d'une somme de bornes ; ∞ - ∞ (NaN) n'est pas un intervalle vide mais une borne inconnue
+     */
+    private static double lowerBound(double value) {
+        return Double.isNaN(value) ? Double.NEGATIVE_INFINITY : down(value);
+    }
+
+    /**
+     * Borne supérieure d'une somme de bornes, +∞ pour ∞ - ∞
+     */
+    private static double upperBound(double value) {
+        return Double.isNaN(value) ? Double.POSITIVE_INFINITY : up(value);
+    }
+
+    static void multiply(double[] buffer, int at, double a, double b, double c, double d) {
+        if (isEmpty(a, b) || isEmpty(c, d)) {
+            set(buffer, at, Double.NaN, Double.NaN);
+            return;
+        }
+        double p1 = product(a, c);
+        double p2 = product(a, d);
+        double p3 = product(b, c);
+        double p4 = product(b, d);
+        set(buffer, at, down(Math.min(Math.min(p1, p2), Math.min(p3, p4))),
+                up(Math.max(Math.max(p1, p2), Math.max(p3, p4))));
+    }
+
+    /**
+     * Produit de deux bornes où 0 × ∞ vaut 0 : une borne infinie n'est jamais atteinte.
+     * ∞ × ∞ donne un infini signé, si bien que le produit de deux intervalles non vides n'est jamais NaN.
+     */
+    private static double product(double a, double b) {
+        return a == 0.0 || b == 0.0 ? 0.0 : a * b;
+    }
+
+    static void divide(double[] buffer, int at, double a, double b, double c, double d) {
+        if (isEmpty(a, b) || isEmpty(c, d) || (c == 0.0 && d == 0.0)) {
+            set(buffer, at, Double.NaN, Double.NaN);
+            return;
+        }
+        if (c <= 0.0 && d >= 0.0) {
+            // Le diviseur contient 0 : l'image n'est pas bornée
+            set(buffer, at, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            return;
+        }
+        double q1 = a / c;
+        double q2 = a / d;
+        double q3 = b / c;
+        double q4 = b / d;
+        if (Double.isNaN(q1) || Double.isNaN(q2) || Double.isNaN(q3) || Double.isNaN(q4)) {
+            // ∞ / ∞ : le quotient peut prendre n'importe quelle valeur, l'intervalle n'est pas vide
+            set(buffer, at, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            return;
+        }
+        set(buffer, at, down(Math.min(Math.min(q1, q2), Math.min(q3, q4))),
+                up(Math.max(Math.max(q1, q2), Math.max(q3, q4))));
+    }
+
+    static void power(double[] buffer, int at, double a, double b, double c, double d) {
+        if (isEmpty(a, b) || isEmpty(c, d)) {
+            set(buffer, at, Double.NaN, Double.NaN);
+            return;
+        }
+        if (c == d && c == Math.rint(c) && Math.abs(c) < (1L << 53)) {
+            integerPower(buffer, at, a, b, c);
+            return;
+        }
+        // Exposant réel : base restreinte à [0, +∞[ puis a^y = exp(y ln a)
+        if (b < 0.0) {
+            set(buffer, at, Double.NaN, Double.NaN);
+            return;
+        }
+        log(buffer, at, Math.max(a, 0.0), b);
+        multiply(buffer, at, buffer[at], buffer[at + 1], c, d);
+        exp(buffer, at, buffer[at], buffer[at + 1]);
+    }
+
+    /**
+     * Puissance entière : monotone sur chaque demi-droite, paire ou impaire selon l'exposant
+     */
+    private static void integerPower(double[] buffer, int at, double a, double b, double n) {
+        if (n == 0.0) {
+            set(buffer, at, 1.0, 1.0);
+            return;
+        }
+        if (n < 0.0) {
+            integerPower(buffer, at, a, b, -n);
+            divide(buffer, at, 1.0, 1.0, buffer[at], buffer[at + 1]);
+            return;
+        }
+        double pa = Math.pow(a, n);
+        double pb = Math.pow(b, n);
+        boolean even = n % 2.0 == 0.0;
+        if (!even) {
+            set(buffer, at, down(pa), up(pb));
+        } else if (a >= 0.0) {
+            set(buffer, at, down(pa), up(pb));
+        } else if (b <= 0.0) {
+            set(buffer, at, down(pb), up(pa));
+        } else {
+            set(buffer, at, 0.0, up(Math.max(pa, pb)));
+        }
+    }
+
+    static void sin(double[] buffer, int at, double a, double b) {
+        periodic(buffer, at, a, b, Math.sin(a), Math.sin(b), Math.PI / 2, -Math.PI / 2);
+    }
+
+    static void cos(double[] buffer, int at, double a, double b) {
+        periodic(buffer, at, a, b, Math.cos(a), Math.cos(b), 0.0, Math.PI);
+    }
+
+    /**
+     * Image d'un intervalle par sin ou cos : les bornes sont les valeurs aux extrémités,
+     * sauf si un maximum (maxAt + 2kπ) ou un minimum (minAt + 2kπ) se trouve dans l'intervalle
+     */
+    private static void periodic(double[] buffer, int at, double a, double b, double fa, double fb,
+            double maxAt, double minAt) {
+        if (isEmpty(a, b) || Double.isInfinite(a) || Double.isInfinite(b) || b - a >= TWO_PI) {
+            set(buffer, at, isEmpty(a, b) ? Double.NaN : -1.0, isEmpty(a, b) ? Double.NaN : 1.0);
+            return;
+        }
+        double lower = contains(a, b, minAt, TWO_PI) ? -1.0 : Math.max(-1.0, down(Math.min(fa, fb)));
+        double upper = contains(a, b, maxAt, TWO_PI) ? 1.0 : Math.min(1.0, up(Math.max(fa, fb)));
+        set(buffer, at, lower, upper);
+    }
+
+    /**
+     * Indique si [a, b] contient un point de la forme offset + k × period, avec une marge de sécurité
+     */
+    private static boolean contains(double a, double b, double offset, double period) {
+        double margin = TOLERANCE * Math.max(1.0, Math.max(Math.abs(a), Math.abs(b)));
+        double k = Math.ceil((a - margin - offset) / period);
+        return offset + k * period <= b + margin;
+    }
+
+    static void tan(double[] buffer, int at, double a, double b) {
+        if (isEmpty(a, b)) {
+            set(buffer, at, Double.NaN, Double.NaN);
+            return;
+        }
+        if (Double.isInfinite(a) || Double.isInfinite(b) || b - a >= Math.PI || contains(a, b, Math.PI / 2, Math.PI)) {
+            // Une asymptote verticale est dans l'intervalle
+            set(buffer, at, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            return;
+        }
+        set(buffer, at, down(Math.tan(a)), up(Math.tan(b)));
+    }
+
+    static void log(double[] buffer, int at, double a, double b) {
+        if (isEmpty(a, b) || b < 0.0) {
+            set(buffer, at, Double.NaN, Double.NaN);
+            return;
+        }
+        double lower = a <= 0.0 ? Double.NEGATIVE_INFINITY : down(Math.log(a));
+        double upper = b == 0.0 ? Double.NEGATIVE_INFINITY : up(Math.log(b));
+        set(buffer, at, lower, upper);
+    }
+
+    static void exp(double[] buffer, int at, double a, double b) {
+        set(buffer, at, Math.max(0.0, down(Math.exp(a))), up(Math.exp(b)));
+    }
+
+    static void sqrt(double[] buffer, int at, double a, double b) {
+        if (isEmpty(a, b) || b < 0.0) {
+            set(buffer, at, Double.NaN, Double.NaN);
+            return;
+        }
+        set(buffer, at, Math.max(0.0, down(Math.sqrt(Math.max(a, 0.0)))), up(Math.sqrt(b)));
+    }
+}
@@ -0,0 +1,267 @@
+import java.util.Arrays;
+
+/**
+ * Journal des opérations du modèle pour annuler et rétablir, sous forme de différences compactes :
+ * chaque entrée tient en un type et trois doubles, quelle que soit la taille de la pile.
+ * Les entrées sont rangées dans un tampon circulaire de capacité fixe ; au-delà, les plus anciennes sont oubliées.
+ * Les opérations sur plusieurs éléments à la fois sauvegardent en plus les valeurs concernées
+ * dans un tampon annexe, libéré au fur et à mesure que leurs entrées sont oubliées.
+ * Ce tampon est borné : les plus anciennes entrées sont aussi oubliées pour y faire de la place.
+ */
+public final class ModelJournal {
+    /** L'accumulateur passe de oldAccu à newAccu, la pile ne change pas */
+    public static final byte ACCU = 0;
+    /** value est dépilée et l'accumulateur passe de oldAccu à newAccu */
+    public static final byte POP = 1;
+    /** value est empilée et l'accumulateur passe de oldAccu à newAccu */
+    public static final byte PUSH = 2;
+    /** L'accumulateur oldAccu et le sommet de la pile value sont échangés ; newAccu vaut value */
+    public static final byte SWAP = 3;
+    /** Les valeurs sauvegardées sont dépilées et l'accumulateur passe de oldAccu à newAccu */
+    public static final byte REDUCE = 4;
+    /**
+     * Les éléments du sommet passent de la première moitié des valeurs sauvegardées à la seconde ;
+     * l'accumulateur passe de oldAccu à newAccu
+     */
+    public static final byte REPLACE = 5;
+
+    private final byte[] kinds;
+    private final double[] oldAccus;
+    private final double[] values;
+    private final double[] newAccus;
+    /** Position dans le tampon annexe des valeurs sauvegardées par chaque entrée */
+    private final long[] savedStarts;
+    private final int[] savedCounts;
+    /** Nombre maximal de valeurs sauvegardées par les entrées du journal */
+    private final int savedCapacity;
+    /** Tampon annexe ; saved[0] est à la position savedBase */
+    private double[] saved = new double[0];
+    private long savedBase;
+    /** Position qui suit la dernière valeur sauvegardée */
+    private long savedEnd;
+    /** Case de la plus ancienne entrée */
+    private int start;
+    /** Nombre d'entrées annulables, à partir de start */
+    private int undoable;
+    /** Nombre d'entrées rétablissables, après les entrées annulables */
+    private int redoable;
+
+    /**
+     * Construit un journal vide
+     * @param capacity nombre maximal d'opérations annulables
+     * @param savedCapacity nombre maximal de valeurs sauvegardées par les opérations sur plusieurs éléments
+     */
+    public ModelJournal(int capacity, int savedCapacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacité du journal invalide : " + capacity);
+        if (savedCapacity < 0)
+            throw new IllegalArgumentException("Capacité des valeurs sauvegardées invalide : " + savedCapacity);
+        this.savedCapacity = savedCapacity;
+        this.kinds = new byte[capacity];
+        this.oldAccus = new double[capacity];
+        this.values = new double[capacity];
+        this.newAccus = new double[capacity];
+        this.savedStarts = new long[capacity];
+        this.savedCounts = new int[capacity];
+    }
+
+    /**
+     * Enregistre une opération ; les opérations annulées ne peuvent plus être rétablies
+     * @param kind type de l'opération
+     * @param oldAccu accumulateur avant l'opération
+     * @param value valeur empilée ou dépilée
+     * @param newAccu accumulateur après l'opération
+     */
+    public void record(byte kind, double oldAccu, double value, double newAccu) {
+        int slot = nextSlot();
+        kinds[slot] = kind;
+        oldAccus[slot] = oldAccu;
+        values[slot] = value;
+        newAccus[slot] = newAccu;
+        savedStarts[slot] = savedEnd;
+        savedCounts[slot] = 0;
+        undoable++;
+    }
+
+    /**
+     * Enregistre une opération sur plusieurs éléments ; les valeurs données sont recopiées dans le journal.
+     * Les plus anciennes entrées sont oubliées tant que la place manque dans le tampon annexe ;
+     * si les valeurs ne tiennent pas même seules, tout le journal est oublié, puisque les opérations
+     * précédentes ne pourraient plus être annulées sans passer par celle-ci
+     * @param kind REDUCE ou REPLACE
+     * @param oldAccu accumulateur avant l'opération
+     * @param newAccu accumulateur après l'opération
+     * @param values valeurs à sauvegarder : les éléments dépilés pour REDUCE,
+     * les anciennes puis les nouvelles valeurs des éléments du sommet pour REPLACE
+     * @param count nombre de valeurs
+     * @return false si l'opération n'a pas pu être enregistrée
+     */
+    public boolean recordBulk(byte kind, double oldAccu, double newAccu, double[] values, int count) {
+        if (count > savedCapacity) {
+            clear();
+            return false;
+        }
+        nextSlot();
+        while (undoable > 0 && savedEnd - savedStarts[start] + count > savedCapacity) {
+            start = (start + 1) % kinds.length;
+            undoable--;
+        }
+        int slot = (start + undoable) % kinds.length;
+        long liveStart = undoable > 0 ? savedStarts[start] : savedEnd;
+        int used = (int) (savedEnd - liveStart);
+        if (savedEnd - savedBase + count > saved.length) {
+            // Les valeurs des entrées oubliées sont écrasées en ramenant les valeurs vivantes au début
+            double[] target = used + count > saved.length
+                    ? new double[Math.min(Math.max(2 * saved.length, used + count), savedCapacity)] : saved;
+            System.arraycopy(saved, (int) (liveStart - savedBase), target, 0, used);
+            saved = target;
+            savedBase = liveStart;
+        }
+        System.arraycopy(values, 0, saved, (int) (savedEnd - savedBase), count);
+
+        kinds[slot] = kind;
+        oldAccus[slot] = oldAccu;
+        this.values[slot] = 0.0;
+        newAccus[slot] = newAccu;
+        savedStarts[slot] = savedEnd;
+        savedCounts[slot] = count;
+        savedEnd += count;
+        undoable++;
+        return true;
+    }
+
+    /**
+     * Oublie les opérations annulées puis, si le journal est plein, la plus ancienne
+     * @return la case de la nouvelle entrée
+     */
+    private int nextSlot() {
+        discardRedo();
+        if (undoable == kinds.length) {
+            start = (start + 1) % kinds.length;
+            undoable--;
+        }
+        return (start + undoable) % kinds.length;
+    }
+
+    /**
+     * Oublie les opérations annulées, par exemple quand l'accumulateur est saisi directement
+     */
+    public void discardRedo() {
+        if (redoable > 0)
+            savedEnd = savedStarts[(start + undoable) % kinds.length];
+        redoable = 0;
+    }
+
+    /**
+     * Recule d'une opération
+     * @return la case de l'opération à défaire, ou -1 s'il n'y en a pas
+     */
+    public int undo() {
+        if (undoable == 0)
+            return -1;
+        undoable--;
+        redoable++;
+        return (start + undoable) % kinds.length;
+    }
+
+    /**
+     * Avance d'une opération annulée
+     * @return la case de l'opération à refaire, ou -1 s'il n'y en a pas
+     */
+    public int redo() {
+        if (redoable == 0)
+            return -1;
+        int slot = (start + undoable) % kinds.length;
+        undoable++;
+        redoable--;
+        return slot;
+    }
+
+    /**
+     * Oublie toutes les opérations
+     */
+    public void clear() {
+        start = 0;
+        undoable = 0;
+        redoable = 0;
+        saved = new double[0];
+        savedBase = 0;
+        savedEnd = 0;
+    }
+
+    /**
+     * Type d'une opération
+     * @param slot case rendue par undo ou redo
+     * @return ACCU, POP, PUSH, SWAP, REDUCE ou REPLACE
+     */
+    public byte getKind(int slot) {
+        return kinds[slot];
+    }
+
+    /**
+     * Accumulateur avant une opération
+     * @param slot case rendue par undo ou redo
+     * @return valeur de l'accumulateur
+     */
+    public double getOldAccu(int slot) {
+        return oldAccus[slot];
+    }
+
+    /**
+     * Valeur empilée ou dépilée par une opération
+     * @param slot case rendue par undo ou redo
+     * @return valeur de la pile
+     */
+    public double getValue(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Accumulateur après une opération
+     * @param slot case rendue par undo ou redo
+     * @return valeur de l'accumulateur
+     */
+    public double getNewAccu(int slot) {
+        return newAccus[slot];
+    }
+
+    /**
+     * Nombre de valeurs sauvegardées par une opération sur plusieurs éléments
+     * @param slot case rendue par undo ou redo
+     * @return nombre de valeurs, 0 pour les autres opérations
+     */
+    public int getSavedCount(int slot) {
+        return savedCounts[slot];
+    }
+
+    /**
+     * Copie des valeurs sauvegardées par une opération sur plusieurs éléments
+     * @param slot case rendue par undo ou redo
+     * @param offset indice de la première valeur parmi celles de l'opération
+     * @param length nombre de valeurs
+     * @return un nouveau tableau
+     */
+    public double[] getSaved(int slot, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > savedCounts[slot])
+            throw new IndexOutOfBoundsException("Valeurs " + offset + " à " + (offset + length)
+                    + " hors des " + savedCounts[slot] + " valeurs sauvegardées");
+        int from = (int) (savedStarts[slot] - savedBase) + offset;
+        return Arrays.copyOfRange(saved, from, from + length);
+    }
+
+    /**
+     * Nombre d'opérations annulables
+     * @return nombre d'entrées avant la position courante
+     */
+    public int getUndoCount() {
+        return undoable;
+    }
+
+    /**
+     * Nombre d'opérations rétablissables
+     * @return nombre d'entrées après la position courante
+     */
+    public int getRedoCount() {
+        return redoable;
+    }
+}
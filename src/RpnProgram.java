@@ -0,0 +1,260 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Programme RPN compilé une fois en tableau d'opcodes, puis exécutable sur un modèle sans interface graphique.
+ * Un programme est une suite de mots séparés par des blancs, par exemple "3 4 + 2 * swap drop" :
+ * <ul>
+ * <li>un nombre est chargé dans l'accumulateur ; si l'accumulateur contient déjà un résultat,
+ * il est d'abord empilé, comme la saisie d'un nombre après une opération sur une calculatrice RPN.
+ * Les nombres s'écrivent comme dans les expressions (chiffres, point décimal, exposant 1.5e-3),
+ * précédés d'un signe moins éventuel ; NaN, Infinity, les suffixes d et f et l'hexadécimal sont refusés</li>
+ * <li>+ - * / prennent leurs opérandes dans l'ordre habituel de la notation polonaise inverse :
+ * "10 3 -" vaut 7 et "10 4 /" vaut 2.5, le sommet de la pile étant l'opérande de gauche et l'accumulateur
+ * celui de droite. Les opérations du modèle calculent au contraire accumulateur - sommet et
+ * accumulateur / sommet : - et / sont donc compilés en un échange suivi de l'opération</li>
+ * <li>inv, push (ou enter), pop, drop, swap et clear appellent l'opération du même nom du modèle</li>
+ * </ul>
+ * Les programmes sont immuables et peuvent être exécutés par plusieurs threads, chacun sur son propre modèle.
+ */
+public final class RpnProgram {
+    private static final int LOAD = 0;
+    private static final int ADD = 1;
+    private static final int SUBTRACT = 2;
+    private static final int MULTIPLY = 3;
+    private static final int DIVIDE = 4;
+    private static final int OPPOSITE = 5;
+    private static final int PUSH = 6;
+    private static final int POP = 7;
+    private static final int DROP = 8;
+    private static final int SWAP = 9;
+    private static final int CLEAR = 10;
+
+    private final String source;
+    /** Opcodes ; LOAD est suivi de l'indice de sa constante */
+    private final int[] code;
+    private final double[] constants;
+    /** Profondeur maximale de la pile pendant une exécution à partir d'une pile vide : le nombre de PUSH */
+    private final int maxDepth;
+
+    private RpnProgram(String source, int[] code, double[] constants) {
+        this.source = source;
+        this.code = code;
+        this.constants = constants;
+        int pushes = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            if (code[pc] == LOAD)
+                pc++;
+            else if (code[pc] == PUSH)
+                pushes++;
+        }
+        this.maxDepth = pushes;
+    }
+
+    /**
+     * Compile un programme. Les nombres sont convertis ici, une seule fois.
+     * @param source texte du programme
+     * @return le programme compilé
+     * @throws RpnSyntaxException si un mot n'est ni un nombre ni une opération connue, avec sa position
+     */
+    public static RpnProgram compile(String source) {
+        int[] code = new int[16];
+        double[] constants = new double[8];
+        int length = 0;
+        int constantCount = 0;
+        // L'accumulateur contient un résultat qu'un nouveau nombre ne doit pas écraser
+        boolean live = false;
+
+        int cursor = 0;
+        while (cursor < source.length()) {
+            if (Character.isWhitespace(source.charAt(cursor))) {
+                cursor++;
+                continue;
+            }
+            int start = cursor;
+            while (cursor < source.length() && !Character.isWhitespace(source.charAt(cursor)))
+                cursor++;
+            String word = source.substring(start, cursor);
+
+            if (length + 3 > code.length)
+                code = Arrays.copyOf(code, 2 * code.length);
+            int opcode = opcode(word);
+            if (opcode == LOAD) {
+                if (!isNumber(word))
+                    throw new RpnSyntaxException(word, start);
+                double value = Double.parseDouble(word);
+                if (live)
+                    code[length++] = PUSH;
+                if (constantCount == constants.length)
+                    constants = Arrays.copyOf(constants, 2 * constantCount);
+                code[length++] = LOAD;
+                code[length++] = constantCount;
+                constants[constantCount++] = value;
+                live = true;
+            } else {
+                // L'opérande de gauche est au sommet de la pile : on le ramène dans l'accumulateur
+                if (opcode == SUBTRACT || opcode == DIVIDE)
+                    code[length++] = SWAP;
+                code[length++] = opcode;
+                if (opcode == PUSH || opcode == CLEAR)
+                    live = false;
+                else if (opcode != DROP)
+                    live = true;
+            }
+        }
+        return new RpnProgram(source, Arrays.copyOf(code, length), Arrays.copyOf(constants, constantCount));
+    }
+
+    /**
+     * Opcode d'un mot, LOAD si ce n'est pas une opération
+     */
+    private static int opcode(String word) {
+        return switch (word.toLowerCase(Locale.ROOT)) {
+            case "+" -> ADD;
+            case "-" -> SUBTRACT;
+            case "*", "×" -> MULTIPLY;
+            case "/", "÷" -> DIVIDE;
+            case "inv" -> OPPOSITE;
+            case "push", "enter" -> PUSH;
+            case "pop" -> POP;
+            case "drop" -> DROP;
+            case "swap" -> SWAP;
+            case "clear" -> CLEAR;
+            default -> LOAD;
+        };
+    }
+
+    /**
+     * Indique si un mot est un nombre tel que l'accepte le lexer des expressions, avec un signe moins éventuel
+     */
+    private static boolean isNumber(String word) {
+        int i = word.startsWith("-") ? 1 : 0;
+        int digits = 0;
+        while (i < word.length() && isDigit(word.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < word.length() && word.charAt(i) == '.') {
+            i++;
+            while (i < word.length() && isDigit(word.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0)
+            return false;
+        if (i < word.length() && (word.charAt(i) == 'e' || word.charAt(i) == 'E')) {
+            i++;
+            if (i < word.length() && (word.charAt(i) == '+' || word.charAt(i) == '-'))
+                i++;
+            if (i == word.length())
+                return false;
+            while (i < word.length() && isDigit(word.charAt(i)))
+                i++;
+        }
+        return i == word.length();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Exécute le programme sur un modèle, à partir de son état courant
+     * @param model modèle de la calculatrice
+     */
+    public void run(CalculatorModelInterface model) {
+        int[] code = this.code;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case LOAD -> model.setAccu(constants[code[pc++]]);
+                case ADD -> model.add();
+                case SUBTRACT -> model.subtract();
+                case MULTIPLY -> model.multiply();
+                case DIVIDE -> model.divide();
+                case OPPOSITE -> model.opposite();
+                case PUSH -> model.push();
+                case POP -> model.pop();
+                case DROP -> model.drop();
+                case SWAP -> model.swap();
+                case CLEAR -> model.clear();
+                default -> throw new IllegalStateException("Opcode inconnu " + code[pc - 1]);
+            }
+        }
+    }
+
+    /**
+     * Exécute le programme à partir d'une pile vide et d'un accumulateur nul, sans passer par un modèle :
+     * la boucle travaille sur un tableau de doubles dimensionné à la compilation et sur l'accumulateur,
+     * sans journal d'annulation. Le résultat est celui de {@link #run(CalculatorModelInterface)} sur un modèle neuf.
+     * @return la valeur finale de l'accumulateur
+     */
+    public double run() {
+        int[] code = this.code;
+        double[] stack = new double[maxDepth];
+        int size = 0;
+        double accu = 0.0;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case LOAD -> accu = constants[code[pc++]];
+                case ADD -> {
+                    if (size > 0)
+                        accu += stack[--size];
+                }
+                case SUBTRACT -> {
+                    if (size > 0)
+                        accu -= stack[--size];
+                }
+                case MULTIPLY -> {
+                    if (size > 0)
+                        accu *= stack[--size];
+                }
+                case DIVIDE -> {
+                    if (size > 0)
+                        accu /= stack[--size];
+                }
+                case OPPOSITE -> accu = 1 / accu;
+                case PUSH -> {
+                    stack[size++] = accu;
+                    accu = 0.0;
+                }
+                case POP -> {
+                    if (size > 0)
+                        accu = stack[--size];
+                }
+                case DROP -> {
+                    if (size > 0)
+                        size--;
+                }
+                case SWAP -> {
+                    if (size > 0) {
+                        double top = stack[size - 1];
+                        stack[size - 1] = accu;
+                        accu = top;
+                    }
+                }
+                case CLEAR -> accu = 0.0;
+                default -> throw new IllegalStateException("Opcode inconnu " + code[pc - 1]);
+            }
+        }
+        return accu;
+    }
+
+    /**
+     * Getter pour le texte d'origine du programme
+     * @return le texte du programme
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Nombre d'opcodes du programme, opérandes comprises
+     * @return taille du programme compilé
+     */
+    public int length() {
+        return code.length;
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Exception levée lorsqu'un mot d'un programme RPN n'est ni un nombre ni une opération connue
+ */
+public class RpnSyntaxException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final String word;
+    private final int offset;
+
+    /**
+     * Construit l'exception
+     * @param word mot refusé
+     * @param offset indice du premier caractère du mot dans le programme
+     */
+    public RpnSyntaxException(String word, int offset) {
+        super("Mot inconnu '" + word + "' au caractère " + offset + " du programme");
+        this.word = word;
+        this.offset = offset;
+    }
+
+    /**
+     * Getter pour le mot refusé
+     * @return le mot tel qu'écrit dans le programme
+     */
+    public String getWord() {
+        return word;
+    }
+
+    /**
+     * Getter pour la place du mot refusé
+     * @return indice du premier caractère du mot dans le programme
+     */
+    public int getOffset() {
+        return offset;
+    }
+}
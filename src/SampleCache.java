@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Valeurs d'une expression déjà calculées sur les grilles du graphe, pour qu'un déplacement ou un zoom
+ * ne réévalue que les points nouveaux.
+ * Les grilles sont celles d'un réseau dyadique : au niveau L, les abscisses j * 2^L pour j entier.
+ * Un point d'un niveau est aussi un point de tous les niveaux plus fins, si bien qu'une grille déjà calculée
+ * fournit un point sur deux de la grille du niveau inférieur après un zoom avant,
+ * et tous les points de la grille du niveau supérieur après un zoom arrière.
+ * Chaque niveau garde quelques bandes de points, fusionnées quand elles se touchent,
+ * pour qu'un retour en arrière après un déplacement ne réévalue rien.
+ * Une instance ne doit pas être partagée entre threads.
+ */
+public final class SampleCache {
+    /** Nombre de niveaux conservés, soit plusieurs zooms successifs dans chaque sens */
+    private static final int MAX_LEVELS = 8;
+    /** Nombre de bandes disjointes conservées par niveau, les moins récentes étant oubliées */
+    private static final int MAX_STRIPS = 4;
+    /** Longueur maximale d'une bande fusionnée, qui borne la mémoire d'un déplacement continu */
+    private static final int MAX_STRIP_LENGTH = 1 << 15;
+
+    /**
+     * Points consécutifs d'un niveau, d'indices first à first + values.length - 1
+     */
+    private static final class Strip {
+        final long first;
+        final double[] values;
+
+        Strip(long first, double[] values) {
+            this.first = first;
+            this.values = values;
+        }
+    }
+
+    private final CompiledExpression function;
+    /** Bandes de chaque niveau, la plus récente en premier */
+    private final Map<Integer, List<Strip>> strips = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Strip>> eldest) {
+            return size() > MAX_LEVELS;
+        }
+    };
+
+    private int[] missing = new int[0];
+    private double[] missingXs = new double[0];
+    private double[] missingYs = new double[0];
+    private int evaluations;
+
+    /**
+     * Construit un cache vide pour une expression
+     * @param function expression compilée d'une seule variable
+     */
+    public SampleCache(CompiledExpression function) {
+        this.function = function;
+    }
+
+    /**
+     * Plus petit niveau dont l'espacement est au moins celui demandé
+     * @param spacing espacement souhaité entre deux points, strictement positif
+     * @return niveau L tel que 2^L &gt;= spacing
+     */
+    public static int level(double spacing) {
+        int exponent = Math.getExponent(spacing);
+        return Math.scalb(1.0, exponent) < spacing ? exponent + 1 : exponent;
+    }
+
+    /**
+     * Valeurs de l'expression aux points j * 2^level pour j de first à first + n - 1.
+     * Seuls les points absents de toutes les grilles conservées sont évalués, en un seul lot.
+     * La grille calculée est ensuite fusionnée avec les bandes du même niveau qui la chevauchent ou la touchent.
+     * @param level niveau de la grille
+     * @param first indice du premier point
+     * @param n nombre de points
+     * @param xs tableau de sortie des abscisses
+     * @param ys tableau de sortie des valeurs
+     */
+    public void values(int level, long first, int n, double[] xs, double[] ys) {
+        double step = Math.scalb(1.0, level);
+        if (missing.length < n) {
+            missing = new int[n];
+            missingXs = new double[n];
+            missingYs = new double[n];
+        }
+
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            long index = first + i;
+            xs[i] = index * step;
+            if (!lookup(level, index, ys, i)) {
+                missing[count] = i;
+                missingXs[count] = xs[i];
+                count++;
+            }
+        }
+        function.evaluate(missingXs, 0, missingYs, 0, count);
+        for (int k = 0; k < count; k++)
+            ys[missing[k]] = missingYs[k];
+        evaluations = count;
+
+        store(level, first, ys, n);
+    }
+
+    /**
+     * Conserve les points first à first + n - 1 d'un niveau, en absorbant les bandes qui les chevauchent
+     * ou les touchent tant que la bande obtenue ne dépasse pas MAX_STRIP_LENGTH
+     */
+    private void store(int level, long first, double[] ys, int n) {
+        List<Strip> list = strips.get(level);
+        if (list == null) {
+            list = new ArrayList<>();
+            strips.put(level, list);
+        }
+        long low = first;
+        long high = first + n;
+        List<Strip> absorbed = new ArrayList<>();
+        for (Iterator<Strip> it = list.iterator(); it.hasNext(); ) {
+            Strip strip = it.next();
+            long stripHigh = strip.first + strip.values.length;
+            if (strip.first <= high && stripHigh >= low
+                    && Math.max(high, stripHigh) - Math.min(low, strip.first) <= MAX_STRIP_LENGTH) {
+                low = Math.min(low, strip.first);
+                high = Math.max(high, stripHigh);
+                absorbed.add(strip);
+                it.remove();
+            }
+        }
+
+        double[] values = new double[(int) (high - low)];
+        for (Strip strip : absorbed)
+            System.arraycopy(strip.values, 0, values, (int) (strip.first - low), strip.values.length);
+        System.arraycopy(ys, 0, values, (int) (first - low), n);
+        list.add(0, new Strip(low, values));
+        if (list.size() > MAX_STRIPS)
+            list.remove(list.size() - 1);
+    }
+
+    /**
+     * Cherche la valeur d'un point dans les grilles conservées
+     * @return true si la valeur a été trouvée et écrite dans out[at]
+     */
+    private boolean lookup(int level, long index, double[] out, int at) {
+        for (Map.Entry<Integer, List<Strip>> entry : strips.entrySet()) {
+            int shift = entry.getKey() - level;
+            long position;
+            if (shift >= 0) {
+                // Grille plus grossière : seuls les points d'indice multiple de 2^shift y figurent
+                if (shift >= Long.SIZE - 1 || (index & ((1L << shift) - 1)) != 0)
+                    continue;
+                position = index >> shift;
+            } else {
+                if (-shift >= Long.SIZE - 1)
+                    continue;
+                position = index << -shift;
+            }
+            for (Strip strip : entry.getValue()) {
+                long offset = position - strip.first;
+                if (offset >= 0 && offset < strip.values.length) {
+                    out[at] = strip.values[(int) offset];
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Getter pour l'expression dont les valeurs sont conservées
+     * @return l'expression compilée
+     */
+    public CompiledExpression getFunction() {
+        return function;
+    }
+
+    /**
+     * Nombre de points évalués par le dernier appel à values, les autres ayant été repris du cache
+     * @return nombre d'évaluations
+     */
+    public int getEvaluationCount() {
+        return evaluations;
+    }
+
+    /**
+     * Oublie toutes les grilles conservées
+     */
+    public void clear() {
+        strips.clear();
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Observateur des modifications de la pile du modèle, notifié élément par élément
+ * pour que la vue n'ait jamais à recopier toute la pile.
+ * Les positions sont celles de la pile, 0 étant le bas.
+ */
+public interface StackListener {
+    /**
+     * Un élément a été empilé
+     * @param value élément au nouveau sommet
+     */
+    void pushed(double value);
+
+    /**
+     * L'élément au sommet a été dépilé
+     */
+    void popped();
+
+    /**
+     * Un élément a été remplacé sans que la taille de la pile change
+     * @param index position de l'élément
+     * @param value nouvelle valeur
+     */
+    void replaced(int index, double value);
+
+    /**
+     * Plusieurs éléments ont été empilés
+     * @param values éléments empilés, le dernier étant au nouveau sommet
+     */
+    void pushedAll(double[] values);
+
+    /**
+     * Plusieurs éléments ont été dépilés
+     * @param count nombre d'éléments retirés du sommet
+     */
+    void poppedAll(int count);
+
+    /**
+     * Les éléments du sommet ont été remplacés sans que la taille de la pile change
+     * @param values nouvelles valeurs, la dernière étant au sommet
+     */
+    void replacedTop(double[] values);
+}
@@ -0,0 +1,115 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tabulation en cours d'exécution : permet de suivre sa progression, de l'annuler et d'attendre son résultat
+ * @param <T> type du résultat (tableau ou fichier)
+ */
+public class Tabulation<T> {
+    private final long total;
+    private final LongAdder completed = new LongAdder();
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private volatile boolean cancelled;
+
+    /**
+     * Construit le suivi d'une tabulation
+     * @param total nombre de points à calculer
+     */
+    Tabulation(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Enregistre des points calculés
+     * @param points nombre de points
+     */
+    void advance(long points) {
+        completed.add(points);
+    }
+
+    /**
+     * Termine la tabulation avec son résultat
+     * @param result résultat de la tabulation
+     */
+    void complete(T result) {
+        future.complete(result);
+    }
+
+    /**
+     * Termine la tabulation en erreur
+     * @param error cause de l'échec
+     */
+    void fail(Throwable error) {
+        future.completeExceptionally(error);
+    }
+
+    /**
+     * Indique aux tâches de calcul si elles doivent s'arrêter
+     * @return la tabulation a été annulée ?
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Demande l'arrêt de la tabulation ; les blocs en cours se terminent, les suivants sont ignorés
+     */
+    public void cancel() {
+        cancelled = true;
+        future.cancel(false);
+    }
+
+    /**
+     * Nombre de points déjà calculés
+     * @return nombre de points calculés
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * Nombre total de points à calculer
+     * @return nombre total de points
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Progression de la tabulation
+     * @return fraction des points calculés, entre 0 et 1
+     */
+    public double getProgress() {
+        return total == 0 ? 1.0 : (double) getCompleted() / total;
+    }
+
+    /**
+     * Indique si la tabulation est terminée (avec succès, en erreur ou annulée)
+     * @return la tabulation est terminée ?
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * Attend la fin de la tabulation
+     * @return le résultat de la tabulation
+     * @throws InterruptedException si le thread appelant est interrompu
+     * @throws ExecutionException si le calcul a échoué
+     * @throws java.util.concurrent.CancellationException si la tabulation a été annulée
+     */
+    public T get() throws InterruptedException, ExecutionException {
+        return future.get();
+    }
+
+    /**
+     * Accès au résultat sous forme de CompletableFuture, pour enchaîner un traitement sans bloquer.
+     * Le futur rendu est une copie : le compléter ou l'annuler n'a aucun effet sur la tabulation,
+     * qui s'annule avec {@link #cancel()}.
+     * @return une copie du futur du résultat
+     */
+    public CompletableFuture<T> toCompletableFuture() {
+        return future.copy();
+    }
+}
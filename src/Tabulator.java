@@ -0,0 +1,220 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tabule une expression compilée sur un grand nombre de points répartis uniformément,
+ * en découpant l'intervalle en blocs calculés en parallèle sur un ForkJoinPool
+ */
+public class Tabulator {
+    /** Nombre de points en dessous duquel un bloc n'est plus découpé */
+    private static final int CHUNK_SIZE = 1 << 16;
+    /** Nombre de points évalués à la fois dans un bloc */
+    private static final int BATCH_SIZE = 4096;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Construit un tabulateur sur le pool commun
+     */
+    public Tabulator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construit un tabulateur sur un pool donné
+     * @param pool pool de threads utilisé pour le calcul
+     */
+    public Tabulator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Tabule f sur n points uniformément répartis entre xmin et xmax (inclus) dans un tableau.
+     * L'appel rend la main immédiatement.
+     * @param f expression compilée
+     * @param xmin premier point
+     * @param xmax dernier point
+     * @param n nombre de points
+     * @return la tabulation en cours, dont le résultat est le tableau des f(x_i)
+     */
+    public Tabulation<double[]> tabulate(CompiledExpression f, double xmin, double xmax, int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("Nombre de points négatif : " + n);
+        double[] values = new double[n];
+        Tabulation<double[]> tabulation = new Tabulation<>(n);
+        Target target = (from, to) -> new Region(DoubleBuffer.wrap(values, (int) from, (int) (to - from)), null);
+        run(tabulation, new ChunkTask(f, xmin, step(xmin, xmax, n), 0, n, target, tabulation), values, null);
+        return tabulation;
+    }
+
+    /**
+     * Tabule f sur n points uniformément répartis entre xmin et xmax (inclus) dans un fichier projeté en mémoire.
+     * Le fichier contient n doubles consécutifs en little-endian ; il peut dépasser la taille du tas.
+     * Chaque zone projetée est forcée sur le disque une fois écrite, et le fichier n'est fermé
+     * qu'après la fin de tous les blocs, même en cas d'annulation.
+     * L'appel rend la main immédiatement.
+     * @param f expression compilée
+     * @param xmin premier point
+     * @param xmax dernier point
+     * @param n nombre de points
+     * @param file fichier de sortie, créé ou écrasé
+     * @return la tabulation en cours, dont le résultat est le fichier écrit
+     * @throws IOException si le fichier ne peut pas être ouvert
+     */
+    public Tabulation<Path> tabulate(CompiledExpression f, double xmin, double xmax, long n, Path file)
+            throws IOException {
+        if (n < 0)
+            throw new IllegalArgumentException("Nombre de points négatif : " + n);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        Tabulation<Path> tabulation = new Tabulation<>(n);
+        // Chaque bloc feuille projette sa propre zone du fichier
+        Target target = (from, to) -> {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, from * Double.BYTES,
+                    (to - from) * Double.BYTES);
+            return new Region(mapping.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer(), mapping);
+        };
+        run(tabulation, new ChunkTask(f, xmin, step(xmin, xmax, n), 0, n, target, tabulation), file, channel);
+        return tabulation;
+    }
+
+    /**
+     * Lance la tâche racine sur le pool sans bloquer l'appelant.
+     * La ressource est fermée une fois la tâche racine terminée, avant que la tabulation soit complétée.
+     */
+    private <T> void run(Tabulation<T> tabulation, ChunkTask root, T result, Closeable resource) {
+        pool.execute(() -> {
+            Throwable failure = null;
+            try {
+                root.invoke();
+            } catch (Throwable e) {
+                failure = e;
+            }
+            if (resource != null) {
+                try {
+                    resource.close();
+                } catch (IOException e) {
+                    if (failure == null)
+                        failure = e;
+                    else
+                        failure.addSuppressed(e);
+                }
+            }
+            if (failure != null)
+                tabulation.fail(failure);
+            else if (!tabulation.isCancelled())
+                tabulation.complete(result);
+        });
+    }
+
+    /**
+     * Pas entre deux points consécutifs
+     */
+    private static double step(double xmin, double xmax, long n) {
+        return n > 1 ? (xmax - xmin) / (n - 1) : 0.0;
+    }
+
+    /**
+     * Destination des valeurs tabulées
+     */
+    private interface Target {
+        /**
+         * Retourne la zone où écrire les points [from, to[, positionnée sur le premier d'entre eux
+         * @param from indice du premier point
+         * @param to indice suivant le dernier point
+         * @return zone de to - from places
+         * @throws IOException si la zone ne peut pas être projetée
+         */
+        Region region(long from, long to) throws IOException;
+    }
+
+    /**
+     * Zone de destination d'un bloc, avec sa projection en mémoire s'il s'agit d'un fichier
+     */
+    private static final class Region {
+        final DoubleBuffer values;
+        /** Projection à forcer sur le disque une fois écrite, null pour un tableau */
+        final MappedByteBuffer mapping;
+
+        Region(DoubleBuffer values, MappedByteBuffer mapping) {
+            this.values = values;
+            this.mapping = mapping;
+        }
+    }
+
+    /**
+     * Calcule les points [start, end[ en se redécoupant tant que le bloc est trop grand
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledExpression f;
+        private final double xmin;
+        private final double step;
+        private final long start;
+        private final long end;
+        private final Target target;
+        private final Tabulation<?> tabulation;
+
+        ChunkTask(CompiledExpression f, double xmin, double step, long start, long end, Target target,
+                Tabulation<?> tabulation) {
+            this.f = f;
+            this.xmin = xmin;
+            this.step = step;
+            this.start = start;
+            this.end = end;
+            this.target = target;
+            this.tabulation = tabulation;
+        }
+
+        @Override
+        protected void compute() {
+            if (tabulation.isCancelled())
+                return;
+            if (end - start > CHUNK_SIZE) {
+                // Découpage aligné sur CHUNK_SIZE pour que les zones projetées aient toutes la même taille
+                long middle = start + Math.max(1, (end - start) / 2 / CHUNK_SIZE) * CHUNK_SIZE;
+                invokeAll(new ChunkTask(f, xmin, step, start, middle, target, tabulation),
+                        new ChunkTask(f, xmin, step, middle, end, target, tabulation));
+                return;
+            }
+
+            Region region;
+            try {
+                region = target.region(start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            DoubleBuffer out = region.values;
+            int size = (int) Math.min(BATCH_SIZE, end - start);
+            double[] xs = new double[size];
+            double[] values = out.hasArray() ? null : new double[size];
+            for (long i = start; i < end; i += size) {
+                if (tabulation.isCancelled())
+                    return;
+                int length = (int) Math.min(size, end - i);
+                for (int k = 0; k < length; k++)
+                    xs[k] = xmin + (i + k) * step;
+                if (values == null) {
+                    f.evaluate(xs, 0, out.array(), out.arrayOffset() + out.position(), length);
+                    out.position(out.position() + length);
+                } else {
+                    f.evaluate(xs, 0, values, 0, length);
+                    out.put(values, 0, length);
+                }
+                tabulation.advance(length);
+            }
+            if (region.mapping != null)
+                region.mapping.force();
+        }
+    }
+}